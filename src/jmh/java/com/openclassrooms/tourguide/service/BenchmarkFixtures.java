@@ -0,0 +1,109 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.client.GpsClient;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.gateway.RewardPointsGateway;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * The services used by the benchmarks, wired to stand-ins of the external clients without latency.
+ * <p>
+ * The data are generated from a fixed seed, so two runs measure the same work.
+ * </p>
+ */
+final class BenchmarkFixtures {
+    
+    private static final long SEED = 42;
+    
+    private final SplittableRandom random = new SplittableRandom(SEED);
+    private final List<Attraction> attractions;
+    
+    final GpsClient gpsClient;
+    final AttractionCatalog attractionCatalog;
+    final RewardPointsGateway rewardPointsGateway;
+    final RewardsService rewardsService;
+    
+    BenchmarkFixtures(int attractionCount) {
+        attractions = new ArrayList<>(attractionCount);
+        for(int i = 0; i < attractionCount; i++) {
+            attractions.add(new Attraction("Attraction" + i, "City", "State", randomLatitude(), randomLongitude()));
+        }
+        gpsClient = new GpsClient() {
+            @Override
+            public List<Attraction> getAttractions() {
+                return attractions;
+            }
+            
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                return new VisitedLocation(userId, new Location(randomLatitude(), randomLongitude()), new Date());
+            }
+        };
+        attractionCatalog = new AttractionCatalog(gpsClient);
+        rewardPointsGateway = new RewardPointsGateway(
+                (attractionId, userId) -> (attractionId.hashCode() ^ userId.hashCode()) & 1023);
+        rewardsService = new RewardsService(rewardPointsGateway, attractionCatalog);
+    }
+    
+    List<Attraction> attractions() {
+        return attractions;
+    }
+    
+    /**
+     * @return a UserService with its Tracker stopped.
+     */
+    UserService userService() {
+        UserService userService = new UserService(new InMemoryUserRepository(), new GpsGateway(gpsClient),
+                new RewardPipeline(rewardsService), new TrackerSettings(Duration.ofDays(1), 1));
+        userService.tracker.stopTracking();
+        return userService;
+    }
+    
+    User user(int i) {
+        return new User(new UUID(SEED, i), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com");
+    }
+    
+    /**
+     * @return the VisitedLocations of a user, half of them at an attraction.
+     */
+    List<VisitedLocation> visitedLocations(User user, int historyLength) {
+        List<VisitedLocation> visitedLocations = new ArrayList<>(historyLength);
+        for(int i = 0; i < historyLength; i++) {
+            Location location = i % 2 == 0 ? attractions.get(random.nextInt(attractions.size())) :
+                    new Location(randomLatitude(), randomLongitude());
+            visitedLocations.add(new VisitedLocation(user.getUserId(), location, new Date(i)));
+        }
+        return visitedLocations;
+    }
+    
+    Location randomLocation() {
+        return new Location(randomLatitude(), randomLongitude());
+    }
+    
+    void close() {
+        rewardsService.close();
+        rewardPointsGateway.close();
+        attractionCatalog.close();
+    }
+    
+    private double randomLatitude() {
+        return -85 + random.nextDouble() * 170;
+    }
+    
+    private double randomLongitude() {
+        return -180 + random.nextDouble() * 360;
+    }
+}
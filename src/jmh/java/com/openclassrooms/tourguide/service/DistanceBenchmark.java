@@ -0,0 +1,99 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.attraction.GreatCircle;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the distance calculation and the nearest attractions search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class DistanceBenchmark {
+    
+    private static final int LOCATIONS = 1024;
+    private static final double RADIUS_MILES = 500;
+    
+    @Param({"26", "1000", "10000"})
+    private int attractionCount;
+    
+    private BenchmarkFixtures fixtures;
+    private TourGuideService tourGuideService;
+    private Location[] locations;
+    private VisitedLocation[] visitedLocations;
+    private int next;
+    private final GreatCircle.Radius radius = GreatCircle.radius(RADIUS_MILES);
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixtures = new BenchmarkFixtures(attractionCount);
+        tourGuideService = new TourGuideService(fixtures.attractionCatalog);
+        locations = new Location[LOCATIONS];
+        visitedLocations = new VisitedLocation[LOCATIONS];
+        UUID userId = UUID.randomUUID();
+        for(int i = 0; i < LOCATIONS; i++) {
+            locations[i] = fixtures.randomLocation();
+            visitedLocations[i] = new VisitedLocation(userId, locations[i], new Date());
+        }
+        fixtures.attractionCatalog.getSnapshot();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixtures.close();
+    }
+    
+    @Benchmark
+    public double getDistance() {
+        int i = next++ & (LOCATIONS - 1);
+        return fixtures.rewardsService.getDistance(locations[i], locations[(i + 1) & (LOCATIONS - 1)]);
+    }
+    
+    @Benchmark
+    public boolean isWithinAttractionProximity() {
+        int i = next++ & (LOCATIONS - 1);
+        return fixtures.rewardsService.isWithinAttractionProximity(fixtures.attractions()
+                .get(i % attractionCount), locations[i]);
+    }
+    
+    /**
+     * The rewards proximity query, run with and without -jvmArgsAppend --add-modules=jdk.incubator.vector
+     * to compare the vectorized and scalar scans.
+     */
+    @Benchmark
+    public void forEachIdWithinRadius(Blackhole blackhole) {
+        Location location = locations[next++ & (LOCATIONS - 1)];
+        fixtures.attractionCatalog.getSnapshot()
+                .index()
+                .forEachIdWithinRadius(location.latitude, location.longitude, radius, blackhole::consume);
+    }
+    
+    @Benchmark
+    public List<Attraction> getNearByAttractions() {
+        return tourGuideService.getNearByAttractions(visitedLocations[next++ & (LOCATIONS - 1)]);
+    }
+}
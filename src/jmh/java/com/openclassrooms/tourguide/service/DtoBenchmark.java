@@ -0,0 +1,76 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.dto.NearAttractionsListDto;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.VisitedLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of DtoService.nearAttractionsListGenerator, over users located at random.
+ * The reward points are cached by the RewardPointsGateway after the warmup.
+ * With a cacheSize of 0 every DTO is generated, otherwise the users unchanged since the warmup hit the DTO cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class DtoBenchmark {
+    
+    @Param({"1000"})
+    private int userCount;
+    
+    @Param({"26", "1000", "10000"})
+    private int attractionCount;
+    
+    @Param({"0", "1000"})
+    private int cacheSize;
+    
+    private BenchmarkFixtures fixtures;
+    private DtoService dtoService;
+    private String[] userNames;
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixtures = new BenchmarkFixtures(attractionCount);
+        UserService userService = fixtures.userService();
+        dtoService = new DtoService(new TourGuideService(fixtures.attractionCatalog),
+                fixtures.rewardsService, userService, cacheSize);
+        userNames = new String[userCount];
+        for(int i = 0; i < userCount; i++) {
+            User user = fixtures.user(i);
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), fixtures.randomLocation(), new Date()));
+            userService.addUser(user);
+            userNames[i] = user.getUserName();
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dtoService.close();
+        fixtures.close();
+    }
+    
+    @Benchmark
+    public NearAttractionsListDto nearAttractionsListGenerator() {
+        next = (next + 1) % userNames.length;
+        return dtoService.nearAttractionsListGenerator(userNames[next]);
+    }
+}
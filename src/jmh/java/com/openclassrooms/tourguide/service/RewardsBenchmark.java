@@ -0,0 +1,77 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.VisitedLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the reward calculation (CalculateUserRewardsCallable) of new users.
+ * <p>
+ * Each operation creates the users, appends their VisitedLocations and calculates their rewards:
+ * the history is evaluated from the first VisitedLocation and the rewards are added to an empty ledger.
+ * The reward points are cached by the RewardPointsGateway after the warmup.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RewardsBenchmark {
+    
+    @Param({"1", "100"})
+    private int userCount;
+    
+    @Param({"10", "1000"})
+    private int historyLength;
+    
+    @Param({"26", "1000"})
+    private int attractionCount;
+    
+    private BenchmarkFixtures fixtures;
+    private List<List<VisitedLocation>> histories;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixtures = new BenchmarkFixtures(attractionCount);
+        histories = new ArrayList<>(userCount);
+        for(int i = 0; i < userCount; i++) {
+            histories.add(fixtures.visitedLocations(fixtures.user(i), historyLength));
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixtures.close();
+    }
+    
+    @Benchmark
+    public int calculateUserRewards() {
+        int rewards = 0;
+        for(int i = 0; i < userCount; i++) {
+            User user = fixtures.user(i);
+            histories.get(i)
+                    .forEach(user::addToVisitedLocations);
+            rewards += fixtures.rewardsService.calculateUserRewards(user)
+                    .size();
+        }
+        return rewards;
+    }
+}
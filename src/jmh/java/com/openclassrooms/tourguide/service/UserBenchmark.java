@@ -0,0 +1,71 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of User.addUserReward: each operation rewards every attraction twice on a new user,
+ * the second reward of an attraction is refused by the ledger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class UserBenchmark {
+    
+    @Param({"26", "1000"})
+    private int attractionCount;
+    
+    private BenchmarkFixtures fixtures;
+    private UserReward[] userRewards;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixtures = new BenchmarkFixtures(attractionCount);
+        User user = fixtures.user(0);
+        List<Attraction> attractions = fixtures.attractions();
+        userRewards = new UserReward[attractions.size()];
+        for(int i = 0; i < userRewards.length; i++) {
+            Attraction attraction = attractions.get(i);
+            userRewards[i] = new UserReward(new VisitedLocation(user.getUserId(), attraction, new Date()), attraction,
+                    i);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixtures.close();
+    }
+    
+    @Benchmark
+    public User addUserReward() {
+        User user = fixtures.user(0);
+        for(int pass = 0; pass < 2; pass++) {
+            for(int attractionId = 0; attractionId < userRewards.length; attractionId++) {
+                user.addUserReward(attractionId, userRewards[attractionId]);
+            }
+        }
+        return user;
+    }
+}
@@ -1,11 +1,43 @@
 package com.openclassrooms.tourguide;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import gpsUtil.GpsUtil;
 import rewardCentral.RewardCentral;
+import tripPricer.TripPricer;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.client.GpsClient;
+import com.openclassrooms.tourguide.client.GpsUtilClient;
+import com.openclassrooms.tourguide.client.MeteredGpsClient;
+import com.openclassrooms.tourguide.client.MeteredRewardClient;
+import com.openclassrooms.tourguide.client.MeteredTripPricingClient;
+import com.openclassrooms.tourguide.client.RewardCentralClient;
+import com.openclassrooms.tourguide.client.RewardClient;
+import com.openclassrooms.tourguide.client.TripPricerClient;
+import com.openclassrooms.tourguide.client.TripPricingClient;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.gateway.RewardPointsGateway;
+import com.openclassrooms.tourguide.gateway.TripDealsGateway;
+import com.openclassrooms.tourguide.internalUser.InternalTestHelper;
+import com.openclassrooms.tourguide.metrics.TourGuideMeterBinder;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.repository.PersistentUserRepository;
+import com.openclassrooms.tourguide.repository.UserRepository;
+import com.openclassrooms.tourguide.service.RewardPipeline;
 import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.UserService;
+import com.openclassrooms.tourguide.simulator.LatencyModel;
+import com.openclassrooms.tourguide.simulator.SimulatedGpsClient;
+import com.openclassrooms.tourguide.simulator.SimulatedRewardClient;
+import com.openclassrooms.tourguide.simulator.SimulatedTripPricingClient;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
+import com.openclassrooms.tourguide.user.LocationHistory;
+import com.openclassrooms.tourguide.user.LocationHistorySettings;
+
+import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * Configuration class to call required Beans.
@@ -13,19 +45,215 @@ import com.openclassrooms.tourguide.service.RewardsService;
 @Configuration
 public class TourGuideModule {
 	
+	/**
+	 * The time between two refreshes of the attraction catalog, disabled if zero.
+	 */
+	@Value("${tourguide.attraction.refresh-interval:0s}")
+	private Duration attractionRefreshInterval;
+	
+	@Value("${tourguide.reward-points.max-concurrency:" + RewardPointsGateway.DEFAULT_MAX_CONCURRENCY + "}")
+	private int rewardPointsMaxConcurrency;
+	
+	@Value("${tourguide.reward-points.cache-ttl:10m}")
+	private Duration rewardPointsCacheTtl;
+	
+	@Value("${tourguide.reward-points.cache-size:" + RewardPointsGateway.DEFAULT_CACHE_SIZE + "}")
+	private int rewardPointsCacheSize;
+	
+	/**
+	 * The number of threads of the rewards ForkJoinPool, the available processors if zero.
+	 */
+	@Value("${tourguide.rewards.parallelism:0}")
+	private int rewardsParallelism;
+	
+	@Value("${tourguide.reward-pipeline.capacity:" + RewardPipeline.DEFAULT_CAPACITY + "}")
+	private int rewardPipelineCapacity;
+	
+	@Value("${tourguide.reward-pipeline.workers:" + RewardPipeline.DEFAULT_WORKERS + "}")
+	private int rewardPipelineWorkers;
+	
+	/**
+	 * The number of VisitedLocations kept per user.
+	 */
+	@Value("${tourguide.location-history.retention:" + LocationHistory.DEFAULT_RETENTION + "}")
+	private int locationHistoryRetention;
+	
+	/**
+	 * The number of last VisitedLocations kept on-heap per user, the older ones are kept off-heap.
+	 */
+	@Value("${tourguide.location-history.hot-capacity:" + LocationHistory.DEFAULT_HOT_CAPACITY + "}")
+	private int locationHistoryHotCapacity;
+	
+	/**
+	 * The directory of the PersistentUserRepository, the users are kept only in memory if empty.
+	 */
+	@Value("${tourguide.store.directory:}")
+	private String storeDirectory;
+	
+	@Value("${tourguide.store.snapshot-interval:10m}")
+	private Duration storeSnapshotInterval;
+	
+	@Value("${tourguide.tracker.interval:5m}")
+	private Duration trackerInterval;
+	
+	@Value("${tourguide.tracker.partitions:" + TrackerSettings.DEFAULT_PARTITIONS + "}")
+	private int trackerPartitions;
+	
+	@Value("${tourguide.gps.min-limit:" + GpsGateway.DEFAULT_MIN_LIMIT + "}")
+	private int gpsMinLimit;
+	
+	@Value("${tourguide.gps.max-limit:" + GpsGateway.DEFAULT_MAX_LIMIT + "}")
+	private int gpsMaxLimit;
+	
+	/**
+	 * The GPS latency over which the concurrency limit decreases.
+	 */
+	@Value("${tourguide.gps.latency-threshold:1s}")
+	private Duration gpsLatencyThreshold;
+	
+	@Value("${tourguide.gps.timeout:10s}")
+	private Duration gpsTimeout;
+	
+	@Value("${tourguide.trip-deals.cache-ttl:5m}")
+	private Duration tripDealsCacheTtl;
+	
+	@Value("${tourguide.trip-deals.cache-size:" + TripDealsGateway.DEFAULT_CACHE_SIZE + "}")
+	private int tripDealsCacheSize;
+	
+	/**
+	 * The reward points rounded down to a multiple of this bucket before pricing a trip, exact if one.
+	 */
+	@Value("${tourguide.trip-deals.reward-points-bucket:" + TripDealsGateway.DEFAULT_REWARD_POINTS_BUCKET + "}")
+	private int tripDealsRewardPointsBucket;
+	
+	/**
+	 * Replace the external libs with the seeded simulators of the simulator package.
+	 */
+	@Value("${tourguide.simulation.enabled:false}")
+	private boolean simulationEnabled;
+	
+	@Value("${tourguide.simulation.seed:0}")
+	private long simulationSeed;
+	
+	@Value("${tourguide.simulation.gps.latency:none}")
+	private String simulationGpsLatency;
+	
+	@Value("${tourguide.simulation.gps.failure-rate:0}")
+	private double simulationGpsFailureRate;
+	
+	@Value("${tourguide.simulation.gps.attractions:" + SimulatedGpsClient.DEFAULT_ATTRACTION_COUNT + "}")
+	private int simulationGpsAttractions;
+	
+	@Value("${tourguide.simulation.rewards.latency:none}")
+	private String simulationRewardsLatency;
+	
+	@Value("${tourguide.simulation.rewards.failure-rate:0}")
+	private double simulationRewardsFailureRate;
+	
+	@Value("${tourguide.simulation.trip-pricer.latency:none}")
+	private String simulationTripPricerLatency;
+	
+	@Value("${tourguide.simulation.trip-pricer.failure-rate:0}")
+	private double simulationTripPricerFailureRate;
+	
+	/**
+	 * The GpsClient, timed, calling gpsUtil or its simulator.
+	 */
+	@Bean
+	public GpsClient getGpsClient() {
+		if(simulationEnabled) {
+			return new MeteredGpsClient(new SimulatedGpsClient(simulationSeed,
+					LatencyModel.parse(simulationGpsLatency), simulationGpsFailureRate, simulationGpsAttractions));
+		}
+		return new MeteredGpsClient(new GpsUtilClient(new GpsUtil()));
+	}
+	
+	/**
+	 * The RewardClient, timed, calling RewardCentral or its simulator.
+	 */
+	@Bean
+	public RewardClient getRewardClient() {
+		if(simulationEnabled) {
+			return new MeteredRewardClient(new SimulatedRewardClient(simulationSeed,
+					LatencyModel.parse(simulationRewardsLatency), simulationRewardsFailureRate));
+		}
+		return new MeteredRewardClient(new RewardCentralClient(new RewardCentral()));
+	}
+	
+	/**
+	 * The TripPricingClient, timed, calling TripPricer or its simulator.
+	 */
 	@Bean
-	public GpsUtil getGpsUtil() {
-		return new GpsUtil();
+	public TripPricingClient getTripPricingClient() {
+		if(simulationEnabled) {
+			return new MeteredTripPricingClient(new SimulatedTripPricingClient(simulationSeed,
+					LatencyModel.parse(simulationTripPricerLatency), simulationTripPricerFailureRate));
+		}
+		return new MeteredTripPricingClient(new TripPricerClient(new TripPricer()));
+	}
+	
+	@Bean
+	public GpsGateway getGpsGateway() {
+		return new GpsGateway(getGpsClient(), gpsMinLimit, gpsMaxLimit, gpsLatencyThreshold, gpsTimeout);
+	}
+	
+	@Bean
+	public AttractionCatalog getAttractionCatalog() {
+		AttractionCatalog attractionCatalog = new AttractionCatalog(getGpsClient());
+		attractionCatalog.scheduleRefresh(attractionRefreshInterval);
+		return attractionCatalog;
 	}
 	
 	@Bean
 	public RewardsService getRewardsService() {
-		return new RewardsService(getRewardCentral());
+		int parallelism = rewardsParallelism > 0 ? rewardsParallelism : Runtime.getRuntime()
+				.availableProcessors();
+		return new RewardsService(getRewardPointsGateway(), getAttractionCatalog(), parallelism);
+	}
+	
+	@Bean
+	public RewardPipeline getRewardPipeline() {
+		return new RewardPipeline(getRewardsService(), rewardPipelineCapacity, rewardPipelineWorkers);
+	}
+	
+	@Bean
+	public RewardPointsGateway getRewardPointsGateway() {
+		return new RewardPointsGateway(getRewardClient(), rewardPointsMaxConcurrency, rewardPointsCacheTtl,
+				rewardPointsCacheSize);
+	}
+	
+	@Bean
+	public TripDealsGateway getTripDealsGateway() {
+		return new TripDealsGateway(getTripPricingClient(), tripDealsCacheTtl, tripDealsCacheSize,
+				tripDealsRewardPointsBucket);
+	}
+	
+	@Bean
+	public UserRepository getUserRepository() {
+		LocationHistorySettings locationHistorySettings =
+				new LocationHistorySettings(locationHistoryRetention, locationHistoryHotCapacity);
+		if(storeDirectory.isBlank()) {
+			// Sized for the internal users.
+			return new InMemoryUserRepository(InMemoryUserRepository.DEFAULT_SHARD_COUNT,
+					InternalTestHelper.getInternalUserNumber(), locationHistorySettings);
+		}
+		PersistentUserRepository userRepository = new PersistentUserRepository(Path.of(storeDirectory),
+				getAttractionCatalog(), locationHistorySettings);
+		userRepository.scheduleSnapshots(storeSnapshotInterval);
+		return userRepository;
+	}
+	
+	/**
+	 * The gauges of the users, the GPS calls and the RewardPipeline, bound by Spring Boot to its registries.
+	 */
+	@Bean
+	public TourGuideMeterBinder getTourGuideMeterBinder(UserService userService) {
+		return new TourGuideMeterBinder(userService, getGpsGateway(), getRewardPipeline());
 	}
 	
 	@Bean
-	public RewardCentral getRewardCentral() {
-		return new RewardCentral();
+	public TrackerSettings getTrackerSettings() {
+		return new TrackerSettings(trackerInterval, trackerPartitions);
 	}
 	
 }
@@ -0,0 +1,262 @@
+package com.openclassrooms.tourguide.attraction;
+
+import com.openclassrooms.tourguide.client.GpsClient;
+import gpsUtil.location.Attraction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache of the GpsClient attractions shared by all services.
+ * <p>
+ * The attractions are loaded once, on the first access, and kept into an immutable Snapshot with their spatial index.
+ * Each Snapshot carries a version stamp, incremented only when a refresh returns a different attraction list.
+ * </p>
+ * <p>
+ * Each attraction name receives a dense integer id, kept by the following refreshes.
+ * The ids let users store their rewarded attractions into a bitset instead of comparing names.
+ * </p>
+ * <p>
+ * The catalog can be refreshed explicitly with the refresh method or periodically with the scheduleRefresh method.
+ * A failed refresh keeps the previous Snapshot.
+ * </p>
+ * <p>
+ * The loads are serialized by a ReentrantLock rather than a monitor: a virtual thread waiting for the first load,
+ * or logging inside it, releases its carrier instead of pinning it.
+ * </p>
+ *
+ * @see GpsClient#getAttractions()
+ * @see AttractionIndex
+ */
+@Slf4j
+public class AttractionCatalog implements AutoCloseable {
+
+    private final GpsClient gpsClient;
+
+    /**
+     * The dense id of every attraction name loaded since the creation of the catalog.
+     */
+    private final Map<String, Integer> attractionIds = new HashMap<>();
+
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot;
+
+    private ScheduledExecutorService refreshScheduler;
+
+    public AttractionCatalog(GpsClient gpsClient) {
+        this.gpsClient = gpsClient;
+    }
+
+    /**
+     * Return the current Snapshot, load the attractions on the first call.
+     * <p>
+     * Callers should read the Snapshot once per treatment to work on a consistent attraction list.
+     * </p>
+     *
+     * @return the current Snapshot.
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if(current == null) {
+            loadLock.lock();
+            try {
+                current = snapshot;
+                if(current == null) {
+                    current = load(null);
+                    snapshot = current;
+                }
+            } finally {
+                loadLock.unlock();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the version stamp of the current Snapshot.
+     */
+    public long getVersion() {
+        return getSnapshot().version();
+    }
+
+    /**
+     * Reload the attractions from the GpsClient.
+     * <p>
+     * If the attraction list is unchanged, the current Snapshot is kept with its version.
+     * </p>
+     *
+     * @return the Snapshot after the refresh.
+     */
+    public Snapshot refresh() {
+        loadLock.lock();
+        try {
+            snapshot = load(snapshot);
+            return snapshot;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Refresh the catalog at a fixed rate in a dedicated thread.
+     *
+     * @param interval the time between two refreshes, nothing is scheduled if zero or negative.
+     */
+    public synchronized void scheduleRefresh(Duration interval) {
+        if(interval.isZero() || interval.isNegative()) {
+            return;
+        }
+        if(refreshScheduler != null) {
+            refreshScheduler.shutdownNow();
+        }
+        refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attraction-catalog-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshScheduler.scheduleAtFixedRate(() -> {
+            try {
+                refresh();
+            } catch(RuntimeException e) {
+                log.error("Attraction catalog refresh failed, keeping version " + snapshot.version(), e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the scheduled refreshes.
+     */
+    @Override
+    public synchronized void close() {
+        if(refreshScheduler != null) {
+            refreshScheduler.shutdownNow();
+            refreshScheduler = null;
+        }
+    }
+
+    private Snapshot load(Snapshot previous) {
+        Attraction[] attractions = gpsClient.getAttractions()
+                .toArray(new Attraction[0]);
+        if(previous != null && previous.sameAttractions(attractions)) {
+            log.debug("Attraction catalog unchanged, version " + previous.version());
+            return previous;
+        }
+        int[] ids = new int[attractions.length];
+        for(int i = 0; i < attractions.length; i++) {
+            ids[i] = attractionIds.computeIfAbsent(attractions[i].attractionName, name -> attractionIds.size());
+        }
+        long version = previous == null ? 1 : previous.version() + 1;
+        log.debug("Attraction catalog loaded " + attractions.length + " attractions, version " + version);
+        return new Snapshot(version, attractions, ids, attractionIds.size());
+    }
+
+    /**
+     * Immutable state of the catalog: the attractions, their ids, their spatial index and the version stamp.
+     */
+    public static final class Snapshot {
+
+        private final long version;
+        private final Attraction[] attractions;
+        private final List<Attraction> attractionList;
+        private final Attraction[] attractionsById;
+        private final Map<String, Integer> idsByName;
+        private final AttractionIndex index;
+
+        private Snapshot(long version, Attraction[] attractions, int[] ids, int idCapacity) {
+            this.version = version;
+            this.attractions = attractions;
+            this.attractionList = Collections.unmodifiableList(Arrays.asList(attractions));
+            this.attractionsById = new Attraction[idCapacity];
+            Map<String, Integer> names = new HashMap<>();
+            for(int i = 0; i < attractions.length; i++) {
+                attractionsById[ids[i]] = attractions[i];
+                names.put(attractions[i].attractionName, ids[i]);
+            }
+            this.idsByName = Map.copyOf(names);
+            this.index = AttractionIndex.of(attractionList, ids);
+        }
+
+        /**
+         * @return the version stamp, incremented on each change of the attraction list.
+         */
+        public long version() {
+            return version;
+        }
+
+        /**
+         * @return the number of attractions.
+         */
+        public int size() {
+            return attractions.length;
+        }
+
+        /**
+         * @param position the position of the attraction in the catalog.
+         * @return the attraction at this position.
+         */
+        public Attraction get(int position) {
+            return attractions[position];
+        }
+
+        /**
+         * @param id the dense id of an attraction.
+         * @return the attraction of this id, or null if it is not in this Snapshot.
+         */
+        public Attraction getById(int id) {
+            return id < attractionsById.length ? attractionsById[id] : null;
+        }
+
+        /**
+         * @param attraction an attraction, from this catalog or not.
+         * @return the dense id of the attraction with the same name, or -1 if unknown.
+         */
+        public int idOf(Attraction attraction) {
+            return idsByName.getOrDefault(attraction.attractionName, -1);
+        }
+
+        /**
+         * @return the upper bound, exclusive, of the attraction ids.
+         */
+        public int idCapacity() {
+            return attractionsById.length;
+        }
+
+        /**
+         * @return an unmodifiable view of the attractions.
+         */
+        public List<Attraction> attractions() {
+            return attractionList;
+        }
+
+        /**
+         * @return the spatial index of the attractions.
+         */
+        public AttractionIndex index() {
+            return index;
+        }
+
+        private boolean sameAttractions(Attraction[] others) {
+            if(others.length != attractions.length) {
+                return false;
+            }
+            for(int i = 0; i < others.length; i++) {
+                if(!others[i].attractionName.equals(attractions[i].attractionName) ||
+                        others[i].latitude != attractions[i].latitude ||
+                        others[i].longitude != attractions[i].longitude) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
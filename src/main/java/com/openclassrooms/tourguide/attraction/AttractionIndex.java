@@ -0,0 +1,304 @@
+package com.openclassrooms.tourguide.attraction;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable spatial index over a list of attractions.
+ * <p>
+ * Each attraction is projected on the unit sphere (x, y, z) and stored into a balanced k-d tree.
+ * The euclidean distance between two points of the unit sphere (the chord) grows with the great-circle distance,
+ * so the k nearest chords are the k nearest attractions and a radius in miles can be converted once into a chord.
+ * The within-radius queries compare dot products with the GreatCircle.Radius, without trigonometry per attraction.
+ * Up to LINEAR_SCAN_MAX_SIZE attractions, a linear ProximityScan of the coordinate arrays, vectorized when the
+ * Vector API is available, is faster than the tree walk and replaces it.
+ * </p>
+ * <p>
+ * The tree is built once and never modified, it can be shared between threads without synchronization.
+ * k-nearest and within-radius queries visit only the branches that can contain a result.
+ * </p>
+ * <p>
+ * Each attraction is stored with an integer id, the catalog dense id, reported by the allocation-free queries.
+ * </p>
+ *
+ * @see GreatCircle
+ */
+public final class AttractionIndex {
+
+    /**
+     * The maximum number of attractions scanned linearly by the within-radius queries.
+     */
+    public static final int LINEAR_SCAN_MAX_SIZE = 512;
+
+    private static final AttractionIndex EMPTY = new AttractionIndex(new Attraction[0], new int[0]);
+
+    /**
+     * Attractions stored in the tree order: the node of the range [lo, hi) is at (lo + hi) / 2.
+     */
+    private final Attraction[] nodes;
+    private final int[] ids;
+    /**
+     * The position of each node, reported instead of the ids by the queries returning attractions.
+     */
+    private final int[] positions;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+
+    private AttractionIndex(Attraction[] attractions, int[] attractionIds) {
+        int size = attractions.length;
+        double[][] points = new double[size][];
+        Integer[] order = new Integer[size];
+        for(int i = 0; i < size; i++) {
+            points[i] = toUnitVector(attractions[i]);
+            order[i] = i;
+        }
+        build(order, points, 0, size, 0);
+
+        nodes = new Attraction[size];
+        ids = new int[size];
+        positions = new int[size];
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+        for(int i = 0; i < size; i++) {
+            nodes[i] = attractions[order[i]];
+            ids[i] = attractionIds[order[i]];
+            positions[i] = i;
+            x[i] = points[order[i]][0];
+            y[i] = points[order[i]][1];
+            z[i] = points[order[i]][2];
+        }
+    }
+
+    /**
+     * Build the index of the attractions parsed, the id of each attraction is its position in the list.
+     *
+     * @param attractions the attractions to index.
+     * @return an AttractionIndex.
+     */
+    public static AttractionIndex of(List<Attraction> attractions) {
+        int[] ids = new int[attractions.size()];
+        Arrays.setAll(ids, i -> i);
+        return of(attractions, ids);
+    }
+
+    /**
+     * Build the index of the attractions parsed with their ids.
+     *
+     * @param attractions the attractions to index.
+     * @param ids         the id of each attraction, at the same position.
+     * @return an AttractionIndex.
+     */
+    public static AttractionIndex of(List<Attraction> attractions, int[] ids) {
+        if(attractions.size() != ids.length) {
+            throw new IllegalArgumentException("Expected " + attractions.size() + " ids, got " + ids.length);
+        }
+        return attractions.isEmpty() ? EMPTY : new AttractionIndex(attractions.toArray(new Attraction[0]), ids.clone());
+    }
+
+    /**
+     * @return the name of the linear scan in use: vector with its number of lanes, or scalar.
+     */
+    public static String getProximityScanName() {
+        return ProximityScan.DEFAULT.name();
+    }
+
+    /**
+     * @return the number of indexed attractions.
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Return the k attractions closest to the location parsed.
+     *
+     * @param location the location parsed.
+     * @param k        the maximum number of attractions returned.
+     * @return a list of attractions sorted from the closest to the farthest.
+     */
+    public List<Attraction> nearest(Location location, int k) {
+        int limit = Math.min(k, nodes.length);
+        if(limit <= 0) {
+            return List.of();
+        }
+        double[] point = toUnitVector(location);
+        int[] found = new int[limit];
+        double[] foundDistances = new double[limit];
+        Arrays.fill(foundDistances, Double.POSITIVE_INFINITY);
+
+        searchNearest(point, 0, nodes.length, 0, found, foundDistances);
+
+        List<Attraction> result = new ArrayList<>(limit);
+        for(int i = 0; i < limit; i++) {
+            result.add(nodes[found[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Return all attractions whose great-circle distance with the location parsed is less than the radius.
+     *
+     * @param location the location parsed.
+     * @param miles    the radius in miles.
+     * @return a list of attractions, without order.
+     */
+    public List<Attraction> withinRadius(Location location, double miles) {
+        List<Attraction> result = new ArrayList<>();
+        searchWithinRadius(location.latitude, location.longitude, GreatCircle.radius(miles), positions,
+                node -> result.add(nodes[node]));
+        return result;
+    }
+
+    /**
+     * Report the id of all attractions whose great-circle distance with the location parsed is less than the radius.
+     * <p>
+     * Nothing is allocated for the results, the ids are given to the consumer in no particular order.
+     * </p>
+     *
+     * @param location the location parsed.
+     * @param miles    the radius in miles.
+     * @param consumer the consumer of the attraction ids.
+     */
+    public void forEachIdWithinRadius(Location location, double miles, IntConsumer consumer) {
+        forEachIdWithinRadius(location.latitude, location.longitude, GreatCircle.radius(miles), consumer);
+    }
+
+    /**
+     * Report the id of all attractions whose great-circle distance with the point parsed is less than the radius.
+     * <p>
+     * The allocation-free form of the query, for a point in primitive degrees and a radius converted once.
+     * </p>
+     *
+     * @param latitude  the latitude of the point.
+     * @param longitude the longitude of the point.
+     * @param radius    the radius, converted by GreatCircle.
+     * @param consumer  the consumer of the attraction ids.
+     * @see GreatCircle#radius(double)
+     */
+    public void forEachIdWithinRadius(double latitude, double longitude, GreatCircle.Radius radius,
+                                      IntConsumer consumer) {
+        searchWithinRadius(latitude, longitude, radius, ids, consumer);
+    }
+
+    /**
+     * Report the value of each node within the radius, its id or its position.
+     *
+     * @param reported the value reported for each node: the ids or the node positions.
+     */
+    private void searchWithinRadius(double latitude, double longitude, GreatCircle.Radius radius, int[] reported,
+                                    IntConsumer consumer) {
+        if(nodes.length == 0 || radius.isEmpty()) {
+            return;
+        }
+        if(radius.isWholeSphere()) {
+            for(int node = 0; node < nodes.length; node++) {
+                consumer.accept(reported[node]);
+            }
+            return;
+        }
+        double latitudeRadians = Math.toRadians(latitude);
+        double longitudeRadians = Math.toRadians(longitude);
+        double cosLatitude = Math.cos(latitudeRadians);
+        double px = cosLatitude * Math.cos(longitudeRadians);
+        double py = cosLatitude * Math.sin(longitudeRadians);
+        double pz = Math.sin(latitudeRadians);
+        if(nodes.length <= LINEAR_SCAN_MAX_SIZE) {
+            ProximityScan.DEFAULT.scan(x, y, z, reported, px, py, pz, radius.minDot(), consumer);
+        } else {
+            searchWithinRadius(px, py, pz, radius, reported, consumer, 0, nodes.length, 0);
+        }
+    }
+
+    private void searchNearest(double[] point, int lo, int hi, int depth, int[] found, double[] foundDistances) {
+        if(lo >= hi) {
+            return;
+        }
+        int node = (lo + hi) >>> 1;
+        double distance = squaredDistance(point, node);
+        int last = found.length - 1;
+        if(distance < foundDistances[last]) {
+            int i = last;
+            while(i > 0 && foundDistances[i - 1] > distance) {
+                found[i] = found[i - 1];
+                foundDistances[i] = foundDistances[i - 1];
+                i--;
+            }
+            found[i] = node;
+            foundDistances[i] = distance;
+        }
+
+        double delta = point[depth % 3] - coordinate(node, depth % 3);
+        boolean leftFirst = delta < 0;
+        searchNearest(point, leftFirst ? lo : node + 1, leftFirst ? node : hi, depth + 1, found, foundDistances);
+        if(delta * delta < foundDistances[last]) {
+            searchNearest(point, leftFirst ? node + 1 : lo, leftFirst ? hi : node, depth + 1, found, foundDistances);
+        }
+    }
+
+    /**
+     * Visit the tree: a node is reported if its dot product with the point is over the radius minimum,
+     * a branch is skipped if its splitting plane is farther than the radius chord.
+     */
+    private void searchWithinRadius(double px, double py, double pz, GreatCircle.Radius radius, int[] reported,
+                                    IntConsumer consumer, int lo, int hi, int depth) {
+        if(lo >= hi) {
+            return;
+        }
+        int node = (lo + hi) >>> 1;
+        if(radius.contains(px * x[node] + py * y[node] + pz * z[node])) {
+            consumer.accept(reported[node]);
+        }
+        int axis = depth % 3;
+        double delta = (axis == 0 ? px : axis == 1 ? py : pz) - coordinate(node, axis);
+        double squaredChord = radius.maxSquaredChord();
+        if(delta < 0 || delta * delta < squaredChord) {
+            searchWithinRadius(px, py, pz, radius, reported, consumer, lo, node, depth + 1);
+        }
+        if(delta >= 0 || delta * delta < squaredChord) {
+            searchWithinRadius(px, py, pz, radius, reported, consumer, node + 1, hi, depth + 1);
+        }
+    }
+
+    private double squaredDistance(double[] point, int node) {
+        double dx = point[0] - x[node];
+        double dy = point[1] - y[node];
+        double dz = point[2] - z[node];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private double coordinate(int node, int axis) {
+        return switch(axis) {
+            case 0 -> x[node];
+            case 1 -> y[node];
+            default -> z[node];
+        };
+    }
+
+    /**
+     * Sort recursively the order parsed to place the median of each range, on the axis of its depth, at its middle.
+     */
+    private static void build(Integer[] order, double[][] points, int lo, int hi, int depth) {
+        if(hi - lo <= 1) {
+            return;
+        }
+        int axis = depth % 3;
+        Arrays.sort(order, lo, hi, Comparator.comparingDouble(i -> points[i][axis]));
+        int mid = (lo + hi) >>> 1;
+        build(order, points, lo, mid, depth + 1);
+        build(order, points, mid + 1, hi, depth + 1);
+    }
+
+    private static double[] toUnitVector(Location location) {
+        double[] vector = new double[3];
+        GreatCircle.toUnitVector(location.latitude, location.longitude, vector, 0);
+        return vector;
+    }
+}
@@ -0,0 +1,127 @@
+package com.openclassrooms.tourguide.attraction;
+
+/**
+ * Allocation-free great-circle kernel over primitive doubles, in degrees.
+ * <p>
+ * A point of the sphere is its unit vector (x, y, z), the cosine of the angle between two points is the dot product
+ * of their vectors. A radius in miles is converted once into a Radius, a minimum dot product and a maximum squared
+ * chord, so the "within range" checks need no trigonometry.
+ * </p>
+ * <p>
+ * The exact distance in miles, for the output, is the arc cosine of the dot product.
+ * </p>
+ */
+public final class GreatCircle {
+    
+    /**
+     * Convert unit form nautical mile to mile.
+     */
+    public static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+    
+    /**
+     * The distance in miles of one radian of great-circle, 60 nautical miles by degree.
+     */
+    public static final double STATUTE_MILES_PER_RADIAN = STATUTE_MILES_PER_NAUTICAL_MILE * 60 * Math.toDegrees(1);
+    
+    private GreatCircle() {
+    }
+    
+    /**
+     * Write the unit vector of a point into the array parsed.
+     *
+     * @param latitude  the latitude in degrees.
+     * @param longitude the longitude in degrees.
+     * @param vector    the array receiving x, y and z.
+     * @param offset    the position of x in the array.
+     */
+    public static void toUnitVector(double latitude, double longitude, double[] vector, int offset) {
+        double latitudeRadians = Math.toRadians(latitude);
+        double longitudeRadians = Math.toRadians(longitude);
+        double cosLatitude = Math.cos(latitudeRadians);
+        vector[offset] = cosLatitude * Math.cos(longitudeRadians);
+        vector[offset + 1] = cosLatitude * Math.sin(longitudeRadians);
+        vector[offset + 2] = Math.sin(latitudeRadians);
+    }
+    
+    /**
+     * @return the cosine of the angle between two points, computed from their coordinates in degrees.
+     */
+    public static double cosAngle(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double latitude1Radians = Math.toRadians(latitude1);
+        double latitude2Radians = Math.toRadians(latitude2);
+        return Math.sin(latitude1Radians) * Math.sin(latitude2Radians) +
+                Math.cos(latitude1Radians) * Math.cos(latitude2Radians) *
+                        Math.cos(Math.toRadians(longitude1 - longitude2));
+    }
+    
+    /**
+     * @param dot the dot product of two unit vectors.
+     * @return the great-circle distance in miles.
+     */
+    public static double miles(double dot) {
+        return STATUTE_MILES_PER_RADIAN * Math.acos(Math.max(-1, Math.min(1, dot)));
+    }
+    
+    /**
+     * @return the great-circle distance in miles between two points, in degrees.
+     */
+    public static double miles(double latitude1, double longitude1, double latitude2, double longitude2) {
+        return miles(cosAngle(latitude1, longitude1, latitude2, longitude2));
+    }
+    
+    /**
+     * @return true if the distance between two points, in degrees, is less than the radius.
+     */
+    public static boolean isWithin(double latitude1, double longitude1, double latitude2, double longitude2,
+                                   Radius radius) {
+        return radius.contains(cosAngle(latitude1, longitude1, latitude2, longitude2));
+    }
+    
+    /**
+     * @param miles the radius in miles.
+     * @return the Radius, to convert once and reuse for many points.
+     */
+    public static Radius radius(double miles) {
+        if(!(miles > 0)) {
+            return new Radius(miles, Double.POSITIVE_INFINITY, -1);
+        }
+        double angle = miles / STATUTE_MILES_PER_RADIAN;
+        if(angle >= Math.PI) {
+            return new Radius(miles, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+        double chord = 2 * Math.sin(angle / 2);
+        return new Radius(miles, Math.cos(angle), chord * chord);
+    }
+    
+    /**
+     * A radius converted for the comparisons without trigonometry.
+     *
+     * @param miles           the radius in miles.
+     * @param minDot          the dot product over which two unit vectors are within the radius.
+     * @param maxSquaredChord the squared euclidean distance under which two unit vectors are within the radius.
+     */
+    public record Radius(double miles, double minDot, double maxSquaredChord) {
+        
+        /**
+         * @return true if no point is within this radius.
+         */
+        public boolean isEmpty() {
+            return minDot == Double.POSITIVE_INFINITY;
+        }
+        
+        /**
+         * @return true if all points are within this radius.
+         */
+        public boolean isWholeSphere() {
+            return minDot == Double.NEGATIVE_INFINITY;
+        }
+        
+        /**
+         * @param dot the dot product of two unit vectors.
+         * @return true if the two points are within this radius.
+         */
+        public boolean contains(double dot) {
+            return dot > minDot;
+        }
+    }
+}
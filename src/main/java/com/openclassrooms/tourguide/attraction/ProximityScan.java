@@ -0,0 +1,89 @@
+package com.openclassrooms.tourguide.attraction;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Linear scan of unit vectors, stored in structure-of-arrays form, against one point.
+ * <p>
+ * The vectorized scan uses the jdk.incubator.vector module, resolved only with
+ * {@code --add-modules jdk.incubator.vector}: it is loaded by reflection and replaced by the scalar scan when the
+ * module is absent.
+ * </p>
+ *
+ * @see AttractionIndex
+ */
+abstract class ProximityScan {
+    
+    private static final String VECTOR_SCAN = "com.openclassrooms.tourguide.attraction.VectorProximityScan";
+    
+    /**
+     * The vectorized scan if the Vector API is available, the scalar scan otherwise.
+     */
+    static final ProximityScan DEFAULT = Loader.load();
+    
+    /**
+     * Report the value of each position whose dot product with the point is over the minimum.
+     *
+     * @param x        the x of the unit vectors.
+     * @param y        the y of the unit vectors.
+     * @param z        the z of the unit vectors.
+     * @param reported the value reported for each position.
+     * @param px       the x of the point.
+     * @param py       the y of the point.
+     * @param pz       the z of the point.
+     * @param minDot   the dot product over which a position is reported.
+     * @param consumer the consumer of the reported values.
+     */
+    abstract void scan(double[] x, double[] y, double[] z, int[] reported, double px, double py, double pz,
+                       double minDot, IntConsumer consumer);
+    
+    /**
+     * @return the name of the scan, for the logs and the benchmarks.
+     */
+    abstract String name();
+    
+    /**
+     * The scalar scan, also used for the tail shorter than the vector lanes.
+     */
+    static void scalarScan(double[] x, double[] y, double[] z, int[] reported, double px, double py, double pz,
+                           double minDot, IntConsumer consumer, int from) {
+        for(int i = from; i < x.length; i++) {
+            if(px * x[i] + py * y[i] + pz * z[i] > minDot) {
+                consumer.accept(reported[i]);
+            }
+        }
+    }
+    
+    static final class Scalar extends ProximityScan {
+        
+        @Override
+        void scan(double[] x, double[] y, double[] z, int[] reported, double px, double py, double pz,
+                  double minDot, IntConsumer consumer) {
+            scalarScan(x, y, z, reported, px, py, pz, minDot, consumer, 0);
+        }
+        
+        @Override
+        String name() {
+            return "scalar";
+        }
+    }
+    
+    @Slf4j
+    private static final class Loader {
+        
+        private static ProximityScan load() {
+            try {
+                ProximityScan scan = (ProximityScan) Class.forName(VECTOR_SCAN)
+                        .getDeclaredConstructor()
+                        .newInstance();
+                log.info("Proximity scan: " + scan.name());
+                return scan;
+            } catch(ReflectiveOperationException | LinkageError e) {
+                log.info("Proximity scan: scalar, the jdk.incubator.vector module is not available.");
+                return new Scalar();
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.openclassrooms.tourguide.attraction;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.function.IntConsumer;
+
+/**
+ * ProximityScan computing the dot products of the preferred number of lanes at once.
+ * <p>
+ * Each step compares the lanes with the minimum into a hit mask, then reports the positions of its set bits.
+ * Only loaded by ProximityScan, when the jdk.incubator.vector module is resolved.
+ * </p>
+ */
+final class VectorProximityScan extends ProximityScan {
+    
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    
+    @Override
+    void scan(double[] x, double[] y, double[] z, int[] reported, double px, double py, double pz,
+              double minDot, IntConsumer consumer) {
+        int bound = SPECIES.loopBound(x.length);
+        int i = 0;
+        for(; i < bound; i += SPECIES.length()) {
+            DoubleVector dot = DoubleVector.fromArray(SPECIES, x, i)
+                    .mul(px)
+                    .add(DoubleVector.fromArray(SPECIES, y, i)
+                            .mul(py))
+                    .add(DoubleVector.fromArray(SPECIES, z, i)
+                            .mul(pz));
+            long hits = dot.compare(VectorOperators.GT, minDot)
+                    .toLong();
+            while(hits != 0) {
+                consumer.accept(reported[i + Long.numberOfTrailingZeros(hits)]);
+                hits &= hits - 1;
+            }
+        }
+        scalarScan(x, y, z, reported, px, py, pz, minDot, consumer, i);
+    }
+    
+    @Override
+    String name() {
+        return "vector, " + SPECIES.length() + " lanes";
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package of attraction classes. Contains the cached attraction catalog and the structures used to query the attractions around a location.
+ */
+package com.openclassrooms.tourguide.attraction;
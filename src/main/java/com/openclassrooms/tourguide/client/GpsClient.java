@@ -0,0 +1,19 @@
+package com.openclassrooms.tourguide.client;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The GPS external dependency: the attractions and the user locations.
+ *
+ * @see GpsUtilClient
+ */
+public interface GpsClient {
+    
+    List<Attraction> getAttractions();
+    
+    VisitedLocation getUserLocation(UUID userId);
+}
@@ -0,0 +1,30 @@
+package com.openclassrooms.tourguide.client;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * GpsClient calling the gpsUtil lib.
+ */
+public class GpsUtilClient implements GpsClient {
+    
+    private final GpsUtil gpsUtil;
+    
+    public GpsUtilClient(GpsUtil gpsUtil) {
+        this.gpsUtil = gpsUtil;
+    }
+    
+    @Override
+    public List<Attraction> getAttractions() {
+        return gpsUtil.getAttractions();
+    }
+    
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        return gpsUtil.getUserLocation(userId);
+    }
+}
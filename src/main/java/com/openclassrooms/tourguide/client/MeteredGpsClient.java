@@ -0,0 +1,39 @@
+package com.openclassrooms.tourguide.client;
+
+import com.openclassrooms.tourguide.metrics.CallTimer;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * GpsClient timing each call of the GpsClient parsed.
+ *
+ * @see TourGuideMetrics#CLIENT_CALLS
+ */
+public class MeteredGpsClient implements GpsClient {
+    
+    private final GpsClient gpsClient;
+    private final CallTimer attractionsTimer;
+    private final CallTimer userLocationTimer;
+    
+    public MeteredGpsClient(GpsClient gpsClient) {
+        this.gpsClient = gpsClient;
+        this.attractionsTimer = new CallTimer(TourGuideMetrics.CLIENT_CALLS, TourGuideMetrics.CLIENT_CALLS_DESCRIPTION,
+                "client", "gps", "operation", "getAttractions");
+        this.userLocationTimer = new CallTimer(TourGuideMetrics.CLIENT_CALLS, TourGuideMetrics.CLIENT_CALLS_DESCRIPTION,
+                "client", "gps", "operation", "getUserLocation");
+    }
+    
+    @Override
+    public List<Attraction> getAttractions() {
+        return attractionsTimer.record(gpsClient::getAttractions);
+    }
+    
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        return userLocationTimer.record(() -> gpsClient.getUserLocation(userId));
+    }
+}
@@ -0,0 +1,28 @@
+package com.openclassrooms.tourguide.client;
+
+import com.openclassrooms.tourguide.metrics.CallTimer;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import java.util.UUID;
+
+/**
+ * RewardClient timing each call of the RewardClient parsed.
+ *
+ * @see TourGuideMetrics#CLIENT_CALLS
+ */
+public class MeteredRewardClient implements RewardClient {
+    
+    private final RewardClient rewardClient;
+    private final CallTimer rewardPointsTimer;
+    
+    public MeteredRewardClient(RewardClient rewardClient) {
+        this.rewardClient = rewardClient;
+        this.rewardPointsTimer = new CallTimer(TourGuideMetrics.CLIENT_CALLS, TourGuideMetrics.CLIENT_CALLS_DESCRIPTION,
+                "client", "rewards", "operation", "getAttractionRewardPoints");
+    }
+    
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        return rewardPointsTimer.record(() -> rewardClient.getAttractionRewardPoints(attractionId, userId));
+    }
+}
@@ -0,0 +1,32 @@
+package com.openclassrooms.tourguide.client;
+
+import com.openclassrooms.tourguide.metrics.CallTimer;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import tripPricer.Provider;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * TripPricingClient timing each call of the TripPricingClient parsed.
+ *
+ * @see TourGuideMetrics#CLIENT_CALLS
+ */
+public class MeteredTripPricingClient implements TripPricingClient {
+    
+    private final TripPricingClient tripPricingClient;
+    private final CallTimer priceTimer;
+    
+    public MeteredTripPricingClient(TripPricingClient tripPricingClient) {
+        this.tripPricingClient = tripPricingClient;
+        this.priceTimer = new CallTimer(TourGuideMetrics.CLIENT_CALLS, TourGuideMetrics.CLIENT_CALLS_DESCRIPTION,
+                "client", "trip-pricer", "operation", "getPrice");
+    }
+    
+    @Override
+    public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                                   int rewardsPoints) {
+        return priceTimer.record(
+                () -> tripPricingClient.getPrice(apiKey, attractionId, adults, children, nightsStay, rewardsPoints));
+    }
+}
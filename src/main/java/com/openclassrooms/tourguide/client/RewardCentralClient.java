@@ -0,0 +1,22 @@
+package com.openclassrooms.tourguide.client;
+
+import rewardCentral.RewardCentral;
+
+import java.util.UUID;
+
+/**
+ * RewardClient calling the RewardCentral lib.
+ */
+public class RewardCentralClient implements RewardClient {
+    
+    private final RewardCentral rewardCentral;
+    
+    public RewardCentralClient(RewardCentral rewardCentral) {
+        this.rewardCentral = rewardCentral;
+    }
+    
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        return rewardCentral.getAttractionRewardPoints(attractionId, userId);
+    }
+}
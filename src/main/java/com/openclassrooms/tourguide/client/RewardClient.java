@@ -0,0 +1,14 @@
+package com.openclassrooms.tourguide.client;
+
+import java.util.UUID;
+
+/**
+ * The rewards external dependency: the points of an attraction for a user.
+ *
+ * @see RewardCentralClient
+ */
+@FunctionalInterface
+public interface RewardClient {
+    
+    int getAttractionRewardPoints(UUID attractionId, UUID userId);
+}
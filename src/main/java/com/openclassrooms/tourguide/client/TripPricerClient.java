@@ -0,0 +1,25 @@
+package com.openclassrooms.tourguide.client;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * TripPricingClient calling the TripPricer lib.
+ */
+public class TripPricerClient implements TripPricingClient {
+    
+    private final TripPricer tripPricer;
+    
+    public TripPricerClient(TripPricer tripPricer) {
+        this.tripPricer = tripPricer;
+    }
+    
+    @Override
+    public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                                   int rewardsPoints) {
+        return tripPricer.getPrice(apiKey, attractionId, adults, children, nightsStay, rewardsPoints);
+    }
+}
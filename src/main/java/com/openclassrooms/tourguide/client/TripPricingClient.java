@@ -0,0 +1,18 @@
+package com.openclassrooms.tourguide.client;
+
+import tripPricer.Provider;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The trip pricing external dependency: the provider offers for a trip.
+ *
+ * @see TripPricerClient
+ */
+@FunctionalInterface
+public interface TripPricingClient {
+    
+    List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                            int rewardsPoints);
+}
@@ -0,0 +1,4 @@
+/**
+ * Package of clients. Contains the interfaces of the external dependencies and their adapters to the libs.
+ */
+package com.openclassrooms.tourguide.client;
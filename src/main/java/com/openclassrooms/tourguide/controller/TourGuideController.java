@@ -1,25 +1,59 @@
 package com.openclassrooms.tourguide.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.tourguide.dto.NearAttractionsListDto;
 import com.openclassrooms.tourguide.dto.TripDealsDto;
+import com.openclassrooms.tourguide.dto.UserBatchDto;
 import com.openclassrooms.tourguide.dto.UserLocationDto;
 import com.openclassrooms.tourguide.dto.UserRewardsDto;
 import com.openclassrooms.tourguide.service.DtoService;
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
 /**
  * The Api controller.
  * <p>
  * Call DtoService to get responses of all endpoints.
+ * </p>
+ * <p>
+ * The endpoints return the futures of the async DtoService generators:
+ * the request thread is released while a slow dependency answers, then Spring MVC dispatches the response.
+ * </p>
+ * <p>
+ * The user endpoints, except the trip deals priced on each call, send the ETag of the user and answer the conditional
+ * requests of an unchanged user with a 304, without generating the response.
+ * </p>
+ * <p>
+ * The /batch endpoints take the userNames and userIds of many users in a JSON body and stream one JSON line per user
+ * (NDJSON), in the order of the users, as soon as the users before it are generated.
+ * A user whose generation fails gets the line {"userId": ..., "error": ...} instead, the other users are still sent.
+ * A batch of more than UserBatchDto.MAX_SIZE userNames and userIds is rejected with a 400.
+ * </p>
  *
  * @see DtoService
  */
 @AllArgsConstructor
 @RestController
+@Slf4j
 public class TourGuideController {
     
     /**
@@ -29,6 +63,8 @@ public class TourGuideController {
      */
     private final DtoService dtoService;
     
+    private final ObjectMapper objectMapper;
+    
     /**
      * Method to manage the home page.
      *
@@ -45,14 +81,22 @@ public class TourGuideController {
      * Call the userLocationGenerator to parse the current location of the user.
      * </p>
      *
-     * @param userName the parameter parsed to get the current user.
-     * @return the UserLocationDto object.
-     * @see DtoService#userLocationGenerator(String)
+     * @param userName   the parameter parsed to get the current user.
+     * @param webRequest the request, checked against the ETag of the user.
+     * @return a future completed with the UserLocationDto object, or a 304 if the user did not change.
+     * @see DtoService#userLocationGeneratorAsync(String)
      */
     @RequestMapping("/getLocation")
-    public UserLocationDto getLocation(
-            @RequestParam String userName) {
-        return dtoService.userLocationGenerator(userName);
+    public CompletableFuture<ResponseEntity<UserLocationDto>> getLocation(
+            @RequestParam String userName, WebRequest webRequest) {
+        String eTag = dtoService.getETag(userName);
+        if(webRequest.checkNotModified(eTag)) {
+            return CompletableFuture.completedFuture(notModified(eTag));
+        }
+        return dtoService.userLocationGeneratorAsync(userName)
+                .thenApply(dto -> ResponseEntity.ok()
+                        .eTag(eTag)
+                        .body(dto));
     }
     
     /**
@@ -61,14 +105,22 @@ public class TourGuideController {
      * Call the nearAttractionsListGenerator method to get the NearAttractionsListDto who contains the fives closest attractions.
      * </p>
      *
-     * @param userName the parameter parsed to get the current user.
-     * @return the NearAttractionsListDto object.
-     * @see DtoService#nearAttractionsListGenerator(String)
+     * @param userName   the parameter parsed to get the current user.
+     * @param webRequest the request, checked against the ETag of the user.
+     * @return a future completed with the NearAttractionsListDto object, or a 304 if the user did not change.
+     * @see DtoService#nearAttractionsListGeneratorAsync(String)
      */
     @RequestMapping("/getNearbyAttractions")
-    public NearAttractionsListDto getNearbyAttractions(
-            @RequestParam String userName) {
-        return dtoService.nearAttractionsListGenerator(userName);
+    public CompletableFuture<ResponseEntity<NearAttractionsListDto>> getNearbyAttractions(
+            @RequestParam String userName, WebRequest webRequest) {
+        String eTag = dtoService.getETag(userName);
+        if(webRequest.checkNotModified(eTag)) {
+            return CompletableFuture.completedFuture(notModified(eTag));
+        }
+        return dtoService.nearAttractionsListGeneratorAsync(userName)
+                .thenApply(dto -> ResponseEntity.ok()
+                        .eTag(eTag)
+                        .body(dto));
     }
     
     /**
@@ -77,14 +129,22 @@ public class TourGuideController {
      * Call the UserRewardsListGenerator method to get the UserRewardsDto who contains the userId and all UserRewards.
      * </p>
      *
-     * @param userName the parameter parsed to get the current user.
-     * @return the UserRewardsDto object.
-     * @see DtoService#UserRewardsListGenerator(String)
+     * @param userName   the parameter parsed to get the current user.
+     * @param webRequest the request, checked against the ETag of the user.
+     * @return a future completed with the UserRewardsDto object, or a 304 if the user did not change.
+     * @see DtoService#UserRewardsListGeneratorAsync(String)
      */
     @RequestMapping("/getRewards")
-    public UserRewardsDto getRewards(
-            @RequestParam String userName) {
-        return dtoService.UserRewardsListGenerator(userName);
+    public CompletableFuture<ResponseEntity<UserRewardsDto>> getRewards(
+            @RequestParam String userName, WebRequest webRequest) {
+        String eTag = dtoService.getETag(userName);
+        if(webRequest.checkNotModified(eTag)) {
+            return CompletableFuture.completedFuture(notModified(eTag));
+        }
+        return dtoService.UserRewardsListGeneratorAsync(userName)
+                .thenApply(dto -> ResponseEntity.ok()
+                        .eTag(eTag)
+                        .body(dto));
     }
     
     /**
@@ -94,12 +154,121 @@ public class TourGuideController {
      * </p>
      *
      * @param userName the user parsed to get latest trips.
-     * @return the TripDealsDto object.
-     * @see DtoService#TripDealListGenerator(String)
+     * @return a future completed with the TripDealsDto object.
+     * @see DtoService#TripDealListGeneratorAsync(String)
      */
     @RequestMapping("/getTripDeals")
-    public TripDealsDto getTripDeals(
+    public CompletableFuture<TripDealsDto> getTripDeals(
             @RequestParam String userName) {
-        return dtoService.TripDealListGenerator(userName);
+        return dtoService.TripDealListGeneratorAsync(userName);
+    }
+    
+    /**
+     * Method to manage the /getAllCurrentLocations endPoint.
+     * <p>
+     * Stream the latest location of every user, as a JSON object of the UserLocationDto by userId: each location
+     * has the shape and the date format of the /getLocation response.
+     * </p>
+     *
+     * @return the locations, written while they are read.
+     * @see DtoService#writeAllCurrentLocations(JsonGenerator)
+     */
+    @GetMapping("/getAllCurrentLocations")
+    public ResponseEntity<StreamingResponseBody> getAllCurrentLocations() {
+        StreamingResponseBody body = outputStream -> dtoService.writeAllCurrentLocations(objectMapper.getFactory()
+                .createGenerator(outputStream));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+    
+    /**
+     * Method to manage the /batch/getLocation endPoint.
+     *
+     * @param userBatch the users to locate.
+     * @return the UserLocationDto objects, one JSON line per user.
+     * @see DtoService#userLocationsGenerator(UserBatchDto)
+     */
+    @PostMapping(value = "/batch/getLocation", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getLocations(@RequestBody UserBatchDto userBatch) {
+        return streamLines(userBatch, dtoService::userLocationsGenerator);
+    }
+    
+    /**
+     * Method to manage the /batch/getNearbyAttractions endPoint.
+     *
+     * @param userBatch the users parsed to get their five closest attractions.
+     * @return the NearAttractionsListDto objects, one JSON line per user.
+     * @see DtoService#nearAttractionsListsGenerator(UserBatchDto)
+     */
+    @PostMapping(value = "/batch/getNearbyAttractions", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getNearbyAttractions(@RequestBody UserBatchDto userBatch) {
+        return streamLines(userBatch, dtoService::nearAttractionsListsGenerator);
+    }
+    
+    /**
+     * Method to manage the /batch/getRewards endPoint.
+     *
+     * @param userBatch the users parsed to get their UserRewards.
+     * @return the UserRewardsDto objects, one JSON line per user.
+     * @see DtoService#userRewardsListsGenerator(UserBatchDto)
+     */
+    @PostMapping(value = "/batch/getRewards", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getRewards(@RequestBody UserBatchDto userBatch) {
+        return streamLines(userBatch, dtoService::userRewardsListsGenerator);
+    }
+    
+    private <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(eTag)
+                .build();
+    }
+    
+    /**
+     * Write the result of each future on its own line, the output is flushed before waiting for a future.
+     * <p>
+     * A failed user is logged and written as an error line, so the users after it are still sent.
+     * </p>
+     *
+     * @param userBatch the users requested.
+     * @param generator the DtoService batch generator, starting the futures of the DTO by userId.
+     * @return the streamed NDJSON response, or a 400 if the batch is larger than UserBatchDto.MAX_SIZE.
+     */
+    private ResponseEntity<StreamingResponseBody> streamLines(UserBatchDto userBatch,
+            Function<UserBatchDto, ? extends Map<UUID, ? extends CompletableFuture<?>>> generator) {
+        if(userBatch.size() > UserBatchDto.MAX_SIZE) {
+            return ResponseEntity.badRequest()
+                    .build();
+        }
+        Map<UUID, ? extends CompletableFuture<?>> results = generator.apply(userBatch);
+        StreamingResponseBody body = outputStream -> {
+            for(Map.Entry<UUID, ? extends CompletableFuture<?>> result : results.entrySet()) {
+                if(!result.getValue()
+                        .isDone()) {
+                    outputStream.flush();
+                }
+                outputStream.write(line(result.getKey(), result.getValue()));
+                outputStream.write('\n');
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    
+    /**
+     * @return the JSON of the result, or the error line of the user if the result failed or cannot be written.
+     */
+    private byte[] line(UUID userId, CompletableFuture<?> result) throws JsonProcessingException {
+        try {
+            return objectMapper.writeValueAsBytes(result.join());
+        } catch(RuntimeException | JsonProcessingException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.warn("Batch generation failed for " + userId, cause);
+            return objectMapper.writeValueAsBytes(objectMapper.createObjectNode()
+                    .put("userId", userId.toString())
+                    .put("error", cause.getClass()
+                            .getSimpleName()));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package com.openclassrooms.tourguide.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Dto model of the users requested by the batch endpoints of the TourGuideController.
+ * <p>
+ * The users are designated by their userName, their userId, or both lists, at most MAX_SIZE in total.
+ * </p>
+ *
+ * @see com.openclassrooms.tourguide.service.DtoService#getUsers(UserBatchDto)
+ */
+@Builder
+public record UserBatchDto(List<String> userNames, List<UUID> userIds) {
+    
+    /**
+     * The most userNames and userIds accepted in a batch.
+     */
+    public static final int MAX_SIZE = 1000;
+    
+    /**
+     * @return the number of userNames and userIds, duplicates included.
+     */
+    public int size() {
+        return (userNames == null ? 0 : userNames.size()) + (userIds == null ? 0 : userIds.size());
+    }
+}
@@ -0,0 +1,99 @@
+package com.openclassrooms.tourguide.gateway;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit adapted to the observed latency, with an additive increase and a multiplicative decrease (AIMD).
+ * <p>
+ * Each call completed under the latency threshold increases the limit by 1/limit, so about one per limit calls.
+ * A call over the threshold, or dropped, decreases the limit by the backoff ratio, at most once per threshold
+ * so a burst of slow calls counts as one congestion signal.
+ * The limit stays between the minimum and the maximum limits.
+ * </p>
+ */
+public class AdaptiveLimiter {
+    
+    private static final double BACKOFF_RATIO = 0.9;
+    
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos = System.nanoTime();
+    
+    public AdaptiveLimiter(int minLimit, int maxLimit, long latencyThreshold, TimeUnit unit) {
+        if(minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limits: " + minLimit + ", " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+        this.limit = maxLimit;
+    }
+    
+    /**
+     * Wait until the number of calls in flight is under the limit, then count the new call.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while(inFlight >= (int) limit) {
+                available.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Count the end of a call and adapt the limit.
+     *
+     * @param latencyNanos the latency of the call.
+     * @param dropped      true if the call failed or timed out.
+     */
+    public void release(long latencyNanos, boolean dropped) {
+        lock.lock();
+        try {
+            inFlight--;
+            long now = System.nanoTime();
+            if(dropped || latencyNanos > latencyThresholdNanos) {
+                if(now - lastDecreaseNanos > latencyThresholdNanos) {
+                    limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                    lastDecreaseNanos = now;
+                }
+            } else {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.openclassrooms.tourguide.gateway;
+
+import com.openclassrooms.tourguide.client.GpsClient;
+import gpsUtil.location.VisitedLocation;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gateway to the GpsClient user locations.
+ * <p>
+ * The calls run in virtual threads, under an AdaptiveLimiter: the caller waits while the limit is reached,
+ * so a tracking sweep submits users at the pace of the GPS instead of all at once.
+ * A call longer than the timeout completes its future with a TimeoutException, its permit is kept until the
+ * GpsClient call ends.
+ * </p>
+ * <p>
+ * The calls, failures, timeouts and latencies are counted for monitoring.
+ * </p>
+ *
+ * @see GpsClient#getUserLocation(UUID)
+ * @see AdaptiveLimiter
+ */
+@Slf4j
+public class GpsGateway implements AutoCloseable {
+    
+    public static final int DEFAULT_MIN_LIMIT = 10;
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+    public static final Duration DEFAULT_LATENCY_THRESHOLD = Duration.ofSeconds(1);
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+    
+    private final GpsClient gpsClient;
+    private final AdaptiveLimiter limiter;
+    private final Duration timeout;
+    private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+    
+    private final LongAdder callCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    
+    public GpsGateway(GpsClient gpsClient) {
+        this(gpsClient, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_LATENCY_THRESHOLD, DEFAULT_TIMEOUT);
+    }
+    
+    public GpsGateway(GpsClient gpsClient, int minLimit, int maxLimit, Duration latencyThreshold,
+                      Duration timeout) {
+        this.gpsClient = gpsClient;
+        this.limiter = new AdaptiveLimiter(minLimit, maxLimit, latencyThreshold.toNanos(), TimeUnit.NANOSECONDS);
+        this.timeout = timeout;
+    }
+    
+    /**
+     * Request the current location of a user, waiting while the concurrency limit is reached.
+     *
+     * @param userId the user id.
+     * @return a future completed with the VisitedLocation, or with a TimeoutException after the timeout.
+     * @throws InterruptedException if interrupted while waiting for the limiter.
+     */
+    public CompletableFuture<VisitedLocation> getUserLocation(UUID userId) throws InterruptedException {
+        limiter.acquire();
+        CompletableFuture<VisitedLocation> future = new CompletableFuture<>();
+        try {
+            executorService.execute(() -> call(userId, future));
+        } catch(Throwable e) {
+            // Even an Error, like a thread that cannot be started, must give the permit back.
+            limiter.release(0, true);
+            throw e;
+        }
+        return future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS)
+                .whenComplete((visitedLocation, throwable) -> {
+                    if(throwable instanceof TimeoutException) {
+                        timeoutCount.increment();
+                        log.warn("GPS call timed out for " + userId);
+                    }
+                });
+    }
+    
+    public int getLimit() {
+        return limiter.getLimit();
+    }
+    
+    public int getInFlight() {
+        return limiter.getInFlight();
+    }
+    
+    public long getCallCount() {
+        return callCount.sum();
+    }
+    
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+    
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+    
+    /**
+     * @return the mean latency of the GPS calls, in milliseconds.
+     */
+    public double getAverageLatencyMillis() {
+        long calls = callCount.sum();
+        return calls == 0 ? 0 : totalLatencyNanos.sum() / (calls * 1_000_000.0);
+    }
+    
+    /**
+     * @return the highest latency of the GPS calls, in milliseconds.
+     */
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+    
+    /**
+     * Stop the running calls.
+     */
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+    }
+    
+    private void call(UUID userId, CompletableFuture<VisitedLocation> future) {
+        long start = System.nanoTime();
+        VisitedLocation visitedLocation = null;
+        Throwable failure = null;
+        try {
+            visitedLocation = gpsClient.getUserLocation(userId);
+        } catch(Throwable e) {
+            // Even an Error must release the permit and complete the future, or the tracking would wait forever.
+            failure = e;
+        }
+        long latency = System.nanoTime() - start;
+        boolean dropped = failure != null || latency > timeout.toNanos();
+        
+        callCount.increment();
+        totalLatencyNanos.add(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        if(failure != null) {
+            failureCount.increment();
+        }
+        limiter.release(latency, dropped);
+        
+        if(failure != null) {
+            future.completeExceptionally(failure);
+            if(failure instanceof Error error) {
+                throw error;
+            }
+        } else {
+            future.complete(visitedLocation);
+        }
+    }
+}
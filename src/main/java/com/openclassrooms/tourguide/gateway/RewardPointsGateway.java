@@ -0,0 +1,167 @@
+package com.openclassrooms.tourguide.gateway;
+
+import com.openclassrooms.tourguide.client.RewardClient;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Gateway to the rewards external dependency.
+ * <p>
+ * The requested points are first read in a bounded cache, keyed by (attractionId, userId) and expired after a TTL.
+ * Concurrent requests of the same key share the same call.
+ * The other requests are queued, taken by a dispatcher thread and executed in virtual threads,
+ * with a maximum number of concurrent RewardClient calls.
+ * </p>
+ * <p>
+ * The RewardClient has no batch endpoint: each pair is a call of its own,
+ * the requests of a user overlap their latencies under the concurrency limit instead of paying them in sequence.
+ * </p>
+ *
+ * @see RewardClient#getAttractionRewardPoints(UUID, UUID)
+ */
+public class RewardPointsGateway implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 1000;
+    public static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(10);
+    public static final int DEFAULT_CACHE_SIZE = 100_000;
+
+    private final RewardClient rewardClient;
+    private final long cacheTtlNanos;
+    private final Semaphore permits;
+
+    private final Map<Key, CachedPoints> cache;
+    private final Map<Key, CompletableFuture<Integer>> inFlight = new ConcurrentHashMap<>();
+    private final BlockingQueue<Key> pending = new LinkedBlockingQueue<>();
+
+    private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread dispatcher;
+
+    public RewardPointsGateway(RewardClient rewardClient) {
+        this(rewardClient, DEFAULT_MAX_CONCURRENCY, DEFAULT_CACHE_TTL, DEFAULT_CACHE_SIZE);
+    }
+
+    public RewardPointsGateway(RewardClient rewardClient, int maxConcurrency, Duration cacheTtl, int cacheSize) {
+        this.rewardClient = rewardClient;
+        this.cacheTtlNanos = cacheTtl.toNanos();
+        this.permits = new Semaphore(maxConcurrency);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedPoints> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.dispatcher = Thread.ofVirtual()
+                .name("reward-points-dispatcher")
+                .start(this::dispatch);
+    }
+
+    /**
+     * Request the reward points of an attraction for a user.
+     *
+     * @param attractionId the attraction id.
+     * @param userId       the user id.
+     * @return a future completed with the reward points.
+     */
+    public CompletableFuture<Integer> getRewardPoints(UUID attractionId, UUID userId) {
+        Key key = new Key(attractionId, userId);
+        Integer cached = getCached(key);
+        if(cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        CompletableFuture<Integer> existing = inFlight.putIfAbsent(key, future);
+        if(existing != null) {
+            return existing;
+        }
+        // The previous call of this key may have completed between the cache read and the putIfAbsent.
+        cached = getCached(key);
+        if(cached != null) {
+            inFlight.remove(key, future);
+            future.complete(cached);
+            return future;
+        }
+        pending.add(key);
+        return future;
+    }
+
+    /**
+     * Stop the dispatcher and the running calls, the pending requests are cancelled.
+     */
+    @Override
+    public void close() {
+        dispatcher.interrupt();
+        executorService.shutdownNow();
+        inFlight.values()
+                .forEach(future -> future.cancel(true));
+    }
+
+    /**
+     * The dispatcher loop: wait for a request and a permit, then call the RewardClient in a virtual thread.
+     */
+    private void dispatch() {
+        try {
+            while(!Thread.currentThread()
+                    .isInterrupted()) {
+                Key key = pending.take();
+                permits.acquire();
+                executorService.execute(() -> call(key));
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+        }
+    }
+
+    private void call(Key key) {
+        CompletableFuture<Integer> future = inFlight.get(key);
+        try {
+            int points = rewardClient.getAttractionRewardPoints(key.attractionId(), key.userId());
+            putCached(key, points);
+            inFlight.remove(key);
+            future.complete(points);
+        } catch(Throwable e) {
+            // Even an Error must complete the future, or the later requests of the key would wait forever.
+            inFlight.remove(key);
+            future.completeExceptionally(e);
+            if(e instanceof Error error) {
+                throw error;
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Integer getCached(Key key) {
+        synchronized(cache) {
+            CachedPoints cachedPoints = cache.get(key);
+            if(cachedPoints == null) {
+                return null;
+            }
+            if(System.nanoTime() - cachedPoints.cachedAt() > cacheTtlNanos) {
+                cache.remove(key);
+                return null;
+            }
+            return cachedPoints.points();
+        }
+    }
+
+    private void putCached(Key key, int points) {
+        synchronized(cache) {
+            cache.put(key, new CachedPoints(points, System.nanoTime()));
+        }
+    }
+
+    private record Key(UUID attractionId, UUID userId) {}
+
+    private record CachedPoints(int points, long cachedAt) {}
+}
@@ -0,0 +1,144 @@
+package com.openclassrooms.tourguide.gateway;
+
+import com.openclassrooms.tourguide.client.TripPricingClient;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import tripPricer.Provider;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gateway to the trip pricing external dependency.
+ * <p>
+ * The quotes are first read in a bounded cache, keyed by (userId, preferences, reward points bucket) and expired after
+ * a TTL. A user has at most one cached quote: a request with other preferences or reward points replaces it,
+ * so the quote of the previous preferences or rewards is invalidated.
+ * Concurrent requests of the same key share the same call.
+ * </p>
+ * <p>
+ * The reward points are rounded down to their bucket before calling the TripPricingClient,
+ * so a bucket larger than one point trades the exact discount for more cache hits.
+ * </p>
+ *
+ * @see TripPricingClient#getPrice(String, UUID, int, int, int, int)
+ */
+public class TripDealsGateway {
+
+    public static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(5);
+    public static final int DEFAULT_CACHE_SIZE = 100_000;
+    public static final int DEFAULT_REWARD_POINTS_BUCKET = 1;
+
+    /**
+     * *********************************
+     * Required to be updated for a production use.
+     * *********************************
+     */
+    private static final String tripPricerApiKey = "test-server-api-key";
+
+    private final TripPricingClient tripPricingClient;
+    private final long cacheTtlNanos;
+    private final int rewardPointsBucket;
+
+    private final Map<UUID, CachedQuote> cache;
+    private final Map<Key, CompletableFuture<List<Provider>>> inFlight = new ConcurrentHashMap<>();
+
+    public TripDealsGateway(TripPricingClient tripPricingClient) {
+        this(tripPricingClient, DEFAULT_CACHE_TTL, DEFAULT_CACHE_SIZE, DEFAULT_REWARD_POINTS_BUCKET);
+    }
+
+    public TripDealsGateway(TripPricingClient tripPricingClient, Duration cacheTtl, int cacheSize,
+                            int rewardPointsBucket) {
+        if(rewardPointsBucket < 1) {
+            throw new IllegalArgumentException("The reward points bucket must be positive: " + rewardPointsBucket);
+        }
+        this.tripPricingClient = tripPricingClient;
+        this.cacheTtlNanos = cacheTtl.toNanos();
+        this.rewardPointsBucket = rewardPointsBucket;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, CachedQuote> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Request the provider offers of a trip for a user.
+     *
+     * @param userId          the user id.
+     * @param userPreferences the preferences of the user: number of adults, children and trip duration.
+     * @param rewardPoints    the cumulative reward points of the user.
+     * @return the provider offers, an immutable list shared by the requests of the same key.
+     */
+    public List<Provider> getTripDeals(UUID userId, UserPreferences userPreferences, int rewardPoints) {
+        Key key = new Key(userId, userPreferences.getNumberOfAdults(), userPreferences.getNumberOfChildren(),
+                userPreferences.getTripDuration(), rewardPoints - Math.floorMod(rewardPoints, rewardPointsBucket));
+        List<Provider> cached = getCached(key);
+        if(cached != null) {
+            return cached;
+        }
+        CompletableFuture<List<Provider>> future = new CompletableFuture<>();
+        CompletableFuture<List<Provider>> existing = inFlight.putIfAbsent(key, future);
+        if(existing != null) {
+            return join(existing);
+        }
+        try {
+            // The previous flight of this key may have completed between the cache read and the putIfAbsent.
+            List<Provider> providers = getCached(key);
+            if(providers == null) {
+                providers = List.copyOf(tripPricingClient.getPrice(tripPricerApiKey, userId, key.adults(),
+                        key.children(), key.nightsStay(), key.rewardPoints()));
+                putCached(key, providers);
+            }
+            future.complete(providers);
+            return providers;
+        } catch(RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private List<Provider> join(CompletableFuture<List<Provider>> future) {
+        try {
+            return future.join();
+        } catch(CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private List<Provider> getCached(Key key) {
+        synchronized(cache) {
+            CachedQuote cachedQuote = cache.get(key.userId());
+            if(cachedQuote == null || !cachedQuote.key()
+                    .equals(key)) {
+                return null;
+            }
+            if(System.nanoTime() - cachedQuote.cachedAt() > cacheTtlNanos) {
+                cache.remove(key.userId());
+                return null;
+            }
+            return cachedQuote.providers();
+        }
+    }
+
+    private void putCached(Key key, List<Provider> providers) {
+        synchronized(cache) {
+            cache.put(key.userId(), new CachedQuote(key, providers, System.nanoTime()));
+        }
+    }
+
+    private record Key(UUID userId, int adults, int children, int nightsStay, int rewardPoints) {}
+
+    private record CachedQuote(Key key, List<Provider> providers, long cachedAt) {}
+}
@@ -0,0 +1,4 @@
+/**
+ * Package of gateways. Contains the classes wrapping the calls to the external dependencies.
+ */
+package com.openclassrooms.tourguide.gateway;
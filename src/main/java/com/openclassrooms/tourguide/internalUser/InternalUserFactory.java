@@ -1,18 +1,27 @@
 package com.openclassrooms.tourguide.internalUser;
 
 import com.openclassrooms.tourguide.service.UserService;
+import com.openclassrooms.tourguide.user.LocationHistory;
 import com.openclassrooms.tourguide.user.User;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 /**
@@ -29,11 +38,17 @@ import java.util.stream.IntStream;
  *  And generate users to test the application performances.
  *  </p>
  *  <p>
+ *  The users are built in parallel, by batches of BATCH_SIZE users added at once.
+ *  Each batch draws from its own SplittableRandom, split from the seed: the same seed generates the same users.
+ *  The users can also be loaded from a CSV seed file, written by writeSeedFile.
+ *  </p>
+ *  <p>
  *  *********************************
  *  For production use
  *  *********************************
  *  For a production use, we need to turn testMode false to disable the in memory users generation.
- *  We need also to set up an external database.
+ *  We need also to set up the tourguide.store.directory to persist the users, the generation is skipped when users
+ *  are restored.
  *  </p>
  *  @see UserService
  */
@@ -41,16 +56,42 @@ import java.util.stream.IntStream;
 @Service
 public class InternalUserFactory {
     
+    /**
+     * The number of users built and added at once.
+     */
+    public static final int BATCH_SIZE = 1024;
+    
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    
     private final UserService userService;
     
+    private final long seed;
+    
     boolean testMode = true;
     
     public InternalUserFactory(UserService userService) {
+        this(userService, System.nanoTime(), "");
+    }
+    
+    /**
+     * @param userService the UserService to add the users to.
+     * @param seed        the seed of the generated users.
+     * @param seedFile    the CSV file to load the users from, the users are generated if empty.
+     */
+    @Autowired
+    public InternalUserFactory(UserService userService, @Value("${tourguide.internal-users.seed:0}") long seed,
+                               @Value("${tourguide.internal-users.seed-file:}") String seedFile) {
         this.userService = userService;
+        this.seed = seed;
         
         Locale.setDefault(Locale.US);
         
-        if(testMode) {
+        if(testMode && userService.getUserCount() > 0) {
+            log.info("TestMode enabled, " + userService.getUserCount() + " users restored, no user generated");
+        } else if(testMode && !seedFile.isBlank()) {
+            log.info("TestMode enabled");
+            loadSeedFile(Path.of(seedFile));
+        } else if(testMode) {
             log.info("TestMode enabled");
             log.debug("Initializing users");
             initializeInternalUsers();
@@ -62,52 +103,154 @@ public class InternalUserFactory {
     /**
      * Method to generate an in memory user pool for tests.
      * By default, generate a pool with 101 users.
+     * <p>
+     * The batches are built and added in parallel.
+     * </p>
      */
     public void initializeInternalUsers() {
-        IntStream.range(0, InternalTestHelper.getInternalUserNumber())
-                .forEach(i -> {
-                    String userName = "internalUser" + i;
-                    String phone = "000";
-                    String email = userName + "@tourGuide.com";
-                    User user = new User(UUID.randomUUID(), userName, phone, email);
-                    generateUserLocationHistory(user);
-                    
-                    userService.internalUserMap.put(userName, user);
+        long start = System.nanoTime();
+        int userNumber = InternalTestHelper.getInternalUserNumber();
+        int batchCount = (userNumber + BATCH_SIZE - 1) / BATCH_SIZE;
+        // Split in order, so each batch gets the same random whatever the thread building it.
+        SplittableRandom random = new SplittableRandom(seed);
+        SplittableRandom[] batchRandoms = new SplittableRandom[batchCount];
+        for(int batch = 0; batch < batchCount; batch++) {
+            batchRandoms[batch] = random.split();
+        }
+        long now = System.currentTimeMillis();
+        
+        IntStream.range(0, batchCount)
+                .parallel()
+                .forEach(batch -> {
+                    int from = batch * BATCH_SIZE;
+                    int to = Math.min(from + BATCH_SIZE, userNumber);
+                    List<User> users = new ArrayList<>(to - from);
+                    for(int i = from; i < to; i++) {
+                        users.add(generateUser(i, batchRandoms[batch], now));
+                    }
+                    userService.addUsers(users);
+                });
+        log.debug("Created " + userNumber + " internal test users in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+    }
+    
+    /**
+     * Method to load the users of a CSV seed file.
+     * <p>
+     * Each line holds a user: userId,userName,phoneNumber,emailAddress followed by its VisitedLocations,
+     * latitude,longitude,timeMillis each. The empty lines and the lines starting with # are skipped.
+     * The lines are parsed and added in parallel, by batches.
+     * </p>
+     *
+     * @param seedFile the path of the file.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    public void loadSeedFile(Path seedFile) {
+        long start = System.nanoTime();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(seedFile);
+        } catch(IOException e) {
+            throw new UncheckedIOException("Cannot read the seed file " + seedFile, e);
+        }
+        int batchCount = (lines.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+        
+        IntStream.range(0, batchCount)
+                .parallel()
+                .forEach(batch -> {
+                    int from = batch * BATCH_SIZE;
+                    int to = Math.min(from + BATCH_SIZE, lines.size());
+                    List<User> users = new ArrayList<>(to - from);
+                    for(int i = from; i < to; i++) {
+                        String line = lines.get(i);
+                        if(!line.isBlank() && !line.startsWith("#")) {
+                            users.add(parseUser(line, seedFile, i + 1));
+                        }
+                    }
+                    userService.addUsers(users);
                 });
-        log.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
+        log.debug("Loaded " + userService.getUserCount() + " users from " + seedFile + " in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+    }
+    
+    /**
+     * Method to write all users and their VisitedLocations into a CSV seed file, read by loadSeedFile.
+     *
+     * @param seedFile the path of the file, replaced if it exists.
+     * @throws UncheckedIOException if the file cannot be written.
+     */
+    public void writeSeedFile(Path seedFile) {
+        try(BufferedWriter writer = Files.newBufferedWriter(seedFile)) {
+            writer.write("# userId,userName,phoneNumber,emailAddress[,latitude,longitude,timeMillis]...");
+            writer.newLine();
+            for(User user : userService.getAllUsers()) {
+                writer.write(user.getUserId() + "," + user.getUserName() + "," + user.getPhoneNumber() + "," +
+                        user.getEmailAddress());
+                LocationHistory.Snapshot visitedLocations = user.getLocationHistory()
+                        .snapshot(0);
+                for(int i = 0; i < visitedLocations.size(); i++) {
+                    writer.write("," + visitedLocations.latitudes()[i] + "," + visitedLocations.longitudes()[i] +
+                            "," + visitedLocations.times()[i]);
+                }
+                writer.newLine();
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException("Cannot write the seed file " + seedFile, e);
+        }
+    }
+    
+    private User generateUser(int i, SplittableRandom random, long now) {
+        String userName = "internalUser" + i;
+        String phone = "000";
+        String email = userName + "@tourGuide.com";
+        User user = userService.newUser(new UUID(random.nextLong(), random.nextLong()), userName, phone, email);
+        generateUserLocationHistory(user, random, now);
+        return user;
     }
     
     /**
      * Method to generate a history location for all in memory user test.
-     * Generate 4 locations with a random Location and a random Time.
+     * Generate 3 locations with a random Location and a random Time.
      *
      * @param user mocked user parsed.
      */
-    private void generateUserLocationHistory(User user) {
-        IntStream.range(0, 3)
-                .forEach(i -> {
-                    user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
-                            new Location(generateRandomLatitude(), generateRandomLongitude()), getRandomTime()));
-                });
+    private void generateUserLocationHistory(User user, SplittableRandom random, long now) {
+        for(int i = 0; i < 3; i++) {
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
+                    new Location(generateRandomLatitude(random), generateRandomLongitude(random)),
+                    getRandomTime(random, now)));
+        }
     }
     
-    private double generateRandomLongitude() {
+    private double generateRandomLongitude(SplittableRandom random) {
         double leftLimit = -180;
         double rightLimit = 180;
-        return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+        return random.nextDouble(leftLimit, rightLimit);
     }
     
-    private double generateRandomLatitude() {
+    private double generateRandomLatitude(SplittableRandom random) {
         double leftLimit = -85.05112878;
         double rightLimit = 85.05112878;
-        return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+        return random.nextDouble(leftLimit, rightLimit);
     }
     
-    private Date getRandomTime() {
-        LocalDateTime localDateTime = LocalDateTime.now()
-                .minusDays(new Random().nextInt(30));
-        return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
+    private Date getRandomTime(SplittableRandom random, long now) {
+        return new Date(now - random.nextInt(30) * DAY_MILLIS);
     }
     
-
+    private User parseUser(String line, Path seedFile, int lineNumber) {
+        String[] fields = line.split(",");
+        if(fields.length < 4 || (fields.length - 4) % 3 != 0) {
+            throw new IllegalArgumentException("Invalid user at " + seedFile + ":" + lineNumber + ": " + line);
+        }
+        User user = userService.newUser(UUID.fromString(fields[0]), fields[1], fields[2], fields[3]);
+        for(int i = 4; i < fields.length; i += 3) {
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
+                    new Location(Double.parseDouble(fields[i]), Double.parseDouble(fields[i + 1])),
+                    new Date(Long.parseLong(fields[i + 2]))));
+        }
+        return user;
+    }
+    
+    
 }
@@ -0,0 +1,60 @@
+package com.openclassrooms.tourguide.metrics;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A pair of timers of the same call, tagged with the outcome: success or failure.
+ *
+ * @see TourGuideMetrics#timer(String, String, String...)
+ */
+public class CallTimer {
+    
+    private final Timer success;
+    private final Timer failure;
+    
+    public CallTimer(String name, String description, String... tags) {
+        String[] successTags = withOutcome(tags, "success");
+        String[] failureTags = withOutcome(tags, "failure");
+        this.success = TourGuideMetrics.timer(name, description, successTags);
+        this.failure = TourGuideMetrics.timer(name, description, failureTags);
+    }
+    
+    /**
+     * Run the call and record its duration, with the failure outcome if it throws.
+     *
+     * @param call the call to time.
+     * @return the call result.
+     */
+    public <T> T record(Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            success.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch(RuntimeException e) {
+            failure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+    
+    /**
+     * Record the duration of a call already done.
+     *
+     * @param nanos  the call duration, in nanoseconds.
+     * @param failed true if the call failed.
+     */
+    public void record(long nanos, boolean failed) {
+        (failed ? failure : success).record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    private static String[] withOutcome(String[] tags, String outcome) {
+        String[] outcomeTags = new String[tags.length + 2];
+        System.arraycopy(tags, 0, outcomeTags, 0, tags.length);
+        outcomeTags[tags.length] = "outcome";
+        outcomeTags[tags.length + 1] = outcome;
+        return outcomeTags;
+    }
+}
@@ -0,0 +1,56 @@
+package com.openclassrooms.tourguide.metrics;
+
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.service.RewardPipeline;
+import com.openclassrooms.tourguide.service.UserService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * The gauges of the TourGuide state, read when the registry is scraped.
+ * <p>
+ * Bound by Spring Boot to its registries as a MeterBinder bean.
+ * The visited location count walks all the users, it is meant for a scrape interval of seconds, not a hot path.
+ * </p>
+ *
+ * @see TourGuideMetrics
+ */
+public class TourGuideMeterBinder implements MeterBinder {
+    
+    private final UserService userService;
+    private final GpsGateway gpsGateway;
+    private final RewardPipeline rewardPipeline;
+    
+    public TourGuideMeterBinder(UserService userService, GpsGateway gpsGateway, RewardPipeline rewardPipeline) {
+        this.userService = userService;
+        this.gpsGateway = gpsGateway;
+        this.rewardPipeline = rewardPipeline;
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(TourGuideMetrics.USERS, userService, UserService::getUserCount)
+                .description("The number of users")
+                .register(registry);
+        Gauge.builder(TourGuideMetrics.VISITED_LOCATIONS, userService, UserService::getVisitedLocationCount)
+                .description("The number of VisitedLocations kept for all users")
+                .register(registry);
+        Gauge.builder(TourGuideMetrics.GPS_LIMIT, gpsGateway, GpsGateway::getLimit)
+                .description("The concurrency limit of the GPS calls")
+                .register(registry);
+        Gauge.builder(TourGuideMetrics.GPS_IN_FLIGHT, gpsGateway, GpsGateway::getInFlight)
+                .description("The number of GPS calls running")
+                .register(registry);
+        FunctionCounter.builder(TourGuideMetrics.GPS_TIMEOUTS, gpsGateway, GpsGateway::getTimeoutCount)
+                .description("The number of GPS calls timed out")
+                .register(registry);
+        Gauge.builder(TourGuideMetrics.REWARD_PIPELINE_QUEUE, rewardPipeline, RewardPipeline::getQueueDepth)
+                .description("The number of users waiting for a rewards calculation")
+                .register(registry);
+        Gauge.builder(TourGuideMetrics.REWARD_PIPELINE_IN_PROGRESS, rewardPipeline, RewardPipeline::getInProgress)
+                .description("The number of rewards calculations running")
+                .register(registry);
+    }
+}
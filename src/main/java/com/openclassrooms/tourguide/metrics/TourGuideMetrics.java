@@ -0,0 +1,65 @@
+package com.openclassrooms.tourguide.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The names of the TourGuide meters and the factory of their timers and counters.
+ * <p>
+ * The timers and counters are registered in the Micrometer global registry, to which Spring Boot adds its registries,
+ * so the services built outside of Spring, in the tests or the benchmarks, are measured the same way.
+ * Every timer publishes a percentile histogram.
+ * </p>
+ *
+ * @see TourGuideMeterBinder
+ */
+public final class TourGuideMetrics {
+    
+    public static final String TRACKING_SWEEP = "tourguide.tracking.sweep";
+    public static final String TRACKING_USER = "tourguide.tracking.user";
+    public static final String TRACKER_CYCLE = "tourguide.tracker.cycle";
+    public static final String TRACKER_LAG = "tourguide.tracker.lag";
+    public static final String TRACKER_SKIPPED = "tourguide.tracker.skipped";
+    public static final String REWARDS_ALL_USERS = "tourguide.rewards.all.users";
+    public static final String REWARDS_USER = "tourguide.rewards.user";
+    public static final String CLIENT_CALLS = "tourguide.client.calls";
+    public static final String CLIENT_CALLS_DESCRIPTION = "The calls of the external dependencies";
+    public static final String USERS = "tourguide.users";
+    public static final String VISITED_LOCATIONS = "tourguide.visited.locations";
+    public static final String GPS_LIMIT = "tourguide.gps.limit";
+    public static final String GPS_IN_FLIGHT = "tourguide.gps.in.flight";
+    public static final String GPS_TIMEOUTS = "tourguide.gps.timeouts";
+    public static final String REWARD_PIPELINE_QUEUE = "tourguide.reward.pipeline.queue";
+    public static final String REWARD_PIPELINE_IN_PROGRESS = "tourguide.reward.pipeline.in.progress";
+    
+    private TourGuideMetrics() {
+    }
+    
+    /**
+     * @param name        the meter name.
+     * @param description the meter description.
+     * @param tags        the tag keys and values.
+     * @return the timer registered in the global registry, with a percentile histogram.
+     */
+    public static Timer timer(String name, String description, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+    }
+    
+    /**
+     * @param name        the meter name.
+     * @param description the meter description.
+     * @param tags        the tag keys and values.
+     * @return the counter registered in the global registry.
+     */
+    public static Counter counter(String name, String description, String... tags) {
+        return Counter.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(Metrics.globalRegistry);
+    }
+}
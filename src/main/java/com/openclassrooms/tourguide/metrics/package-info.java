@@ -0,0 +1,4 @@
+/**
+ * Package of metrics. Contains the names of the Micrometer meters and the helpers to register them.
+ */
+package com.openclassrooms.tourguide.metrics;
@@ -0,0 +1,101 @@
+package com.openclassrooms.tourguide.repository;
+
+import com.openclassrooms.tourguide.user.LocationHistorySettings;
+import com.openclassrooms.tourguide.user.User;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In memory UserRepository.
+ * <p>
+ * The users are striped into ConcurrentHashMaps by the hash of their userName: each stripe is a shard.
+ * A second ConcurrentHashMap indexes the users by userId.
+ * </p>
+ */
+public class InMemoryUserRepository implements UserRepository {
+    
+    public static final int DEFAULT_SHARD_COUNT = 64;
+    
+    private final ConcurrentMap<String, User>[] shards;
+    private final ConcurrentMap<UUID, User> usersById;
+    private final LocationHistorySettings locationHistorySettings;
+    
+    public InMemoryUserRepository() {
+        this(DEFAULT_SHARD_COUNT);
+    }
+    
+    public InMemoryUserRepository(int shardCount) {
+        this(shardCount, 0);
+    }
+    
+    public InMemoryUserRepository(int shardCount, int expectedUsers) {
+        this(shardCount, expectedUsers, LocationHistorySettings.DEFAULT);
+    }
+    
+    /**
+     * @param shardCount              the number of shards.
+     * @param expectedUsers           the number of users expected, to size the maps once instead of resizing them.
+     * @param locationHistorySettings the settings of the LocationHistories of the users created.
+     */
+    @SuppressWarnings("unchecked")
+    public InMemoryUserRepository(int shardCount, int expectedUsers, LocationHistorySettings locationHistorySettings) {
+        shards = new ConcurrentMap[shardCount];
+        for(int i = 0; i < shardCount; i++) {
+            shards[i] = new ConcurrentHashMap<>(expectedUsers / shardCount + 1);
+        }
+        usersById = new ConcurrentHashMap<>(Math.max(expectedUsers, 16));
+        this.locationHistorySettings = locationHistorySettings;
+    }
+    
+    @Override
+    public LocationHistorySettings getLocationHistorySettings() {
+        return locationHistorySettings;
+    }
+    
+    @Override
+    public User findByUserName(String userName) {
+        return shards[shardOf(userName)].get(userName);
+    }
+    
+    @Override
+    public User findByUserId(UUID userId) {
+        return usersById.get(userId);
+    }
+    
+    @Override
+    public boolean add(User user) {
+        ConcurrentMap<String, User> shard = shards[shardOf(user.getUserName())];
+        if(shard.putIfAbsent(user.getUserName(), user) != null) {
+            return false;
+        }
+        if(usersById.putIfAbsent(user.getUserId(), user) != null) {
+            shard.remove(user.getUserName(), user);
+            return false;
+        }
+        return true;
+    }
+    
+    @Override
+    public int count() {
+        return usersById.size();
+    }
+    
+    @Override
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    @Override
+    public Collection<User> shard(int shard) {
+        return Collections.unmodifiableCollection(shards[shard].values());
+    }
+    
+    private int shardOf(String userName) {
+        int hash = userName.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+}
@@ -0,0 +1,217 @@
+package com.openclassrooms.tourguide.repository;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Append-only log of fixed-size binary records, written through memory-mapped segments of its file.
+ * <p>
+ * Each record is RECORD_SIZE bytes: a type, a user id, a sequence number or reward points, a location and a time.
+ * The type is written last, a record cut by a crash reads as zeros, the end of the log.
+ * The file grows by SEGMENT_SIZE bytes, mapped when the previous segment is full.
+ * </p>
+ * <p>
+ * The appends are written into the page cache, they survive a crash of the JVM; the force method flushes them to the
+ * disk. The appends after the close are dropped.
+ * </p>
+ */
+final class MappedRecordLog implements AutoCloseable {
+    
+    static final int RECORD_SIZE = 64;
+    static final long SEGMENT_SIZE = (long) RECORD_SIZE << 20;
+    
+    static final byte LOCATION = 1;
+    static final byte CLEAR = 2;
+    static final byte REWARD = 3;
+    
+    private static final int TYPE = 0;
+    private static final int ATTRACTION_ID = 4;
+    private static final int USER_ID_MOST = 8;
+    private static final int USER_ID_LEAST = 16;
+    private static final int VALUE = 24;
+    private static final int LATITUDE = 32;
+    private static final int LONGITUDE = 40;
+    private static final int TIME = 48;
+    
+    private final FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private int position;
+    private boolean closed;
+    
+    private MappedRecordLog(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+    }
+    
+    /**
+     * @param path the path of the log, must not exist.
+     * @return an empty log.
+     * @throws IOException if the file cannot be created.
+     */
+    static MappedRecordLog create(Path path) throws IOException {
+        return new MappedRecordLog(FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+    }
+    
+    synchronized void appendLocation(UUID userId, long sequence, double latitude, double longitude, long time) {
+        append(LOCATION, userId, 0, sequence, latitude, longitude, time);
+    }
+    
+    synchronized void appendClear(UUID userId, long sequence) {
+        append(CLEAR, userId, 0, sequence, 0, 0, 0);
+    }
+    
+    synchronized void appendReward(UUID userId, int attractionId, int rewardPoints, double latitude,
+                                   double longitude, long time) {
+        append(REWARD, userId, attractionId, rewardPoints, latitude, longitude, time);
+    }
+    
+    /**
+     * @return the number of records appended.
+     */
+    synchronized long size() {
+        return (segmentStart + position) / RECORD_SIZE;
+    }
+    
+    /**
+     * Flush the records to the disk.
+     */
+    synchronized void force() {
+        if(!closed) {
+            segment.force();
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        segment.force();
+        closed = true;
+        channel.close();
+    }
+    
+    private void append(byte type, UUID userId, int attractionId, long value, double latitude, double longitude,
+                        long time) {
+        if(closed) {
+            return;
+        }
+        if(position == SEGMENT_SIZE) {
+            try {
+                segment.force();
+                segmentStart += SEGMENT_SIZE;
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, segmentStart, SEGMENT_SIZE);
+            } catch(IOException e) {
+                throw new IllegalStateException("Cannot grow the log", e);
+            }
+            position = 0;
+        }
+        segment.putInt(position + ATTRACTION_ID, attractionId);
+        segment.putLong(position + USER_ID_MOST, userId.getMostSignificantBits());
+        segment.putLong(position + USER_ID_LEAST, userId.getLeastSignificantBits());
+        segment.putLong(position + VALUE, value);
+        segment.putDouble(position + LATITUDE, latitude);
+        segment.putDouble(position + LONGITUDE, longitude);
+        segment.putLong(position + TIME, time);
+        segment.put(position + TYPE, type);
+        position += RECORD_SIZE;
+    }
+    
+    /**
+     * @param path the path of a log.
+     * @return a Reader of the records of the log, from the first one.
+     * @throws IOException if the file cannot be read.
+     */
+    static Reader read(Path path) throws IOException {
+        return new Reader(FileChannel.open(path, StandardOpenOption.READ));
+    }
+    
+    /**
+     * Cursor over the records of a log, mapped segment by segment.
+     * <p>
+     * The accessors read the current record, without copying it.
+     * </p>
+     */
+    static final class Reader implements AutoCloseable {
+        
+        private final FileChannel channel;
+        private final long fileSize;
+        private MappedByteBuffer segment;
+        private long segmentStart = -SEGMENT_SIZE;
+        private int position = (int) SEGMENT_SIZE;
+        
+        private Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.fileSize = channel.size();
+        }
+        
+        /**
+         * Move to the next record.
+         *
+         * @return false at the end of the log.
+         * @throws IOException if the file cannot be read.
+         */
+        boolean next() throws IOException {
+            position += RECORD_SIZE;
+            if(position >= SEGMENT_SIZE) {
+                long start = segmentStart + SEGMENT_SIZE;
+                if(start >= fileSize) {
+                    return false;
+                }
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, fileSize - start));
+                segmentStart = start;
+                position = 0;
+            }
+            return position + RECORD_SIZE <= segment.limit() && type() != 0;
+        }
+        
+        byte type() {
+            return segment.get(position + TYPE);
+        }
+        
+        UUID userId() {
+            return new UUID(segment.getLong(position + USER_ID_MOST), segment.getLong(position + USER_ID_LEAST));
+        }
+        
+        int attractionId() {
+            return segment.getInt(position + ATTRACTION_ID);
+        }
+        
+        /**
+         * @return the sequence number of a LOCATION or CLEAR record.
+         */
+        long sequence() {
+            return segment.getLong(position + VALUE);
+        }
+        
+        /**
+         * @return the reward points of a REWARD record.
+         */
+        int rewardPoints() {
+            return (int) segment.getLong(position + VALUE);
+        }
+        
+        double latitude() {
+            return segment.getDouble(position + LATITUDE);
+        }
+        
+        double longitude() {
+            return segment.getDouble(position + LONGITUDE);
+        }
+        
+        long time() {
+            return segment.getLong(position + TIME);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
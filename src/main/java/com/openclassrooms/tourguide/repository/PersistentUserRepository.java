@@ -0,0 +1,557 @@
+package com.openclassrooms.tourguide.repository;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.user.LocationHistory;
+import com.openclassrooms.tourguide.user.LocationHistorySettings;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserJournal;
+import com.openclassrooms.tourguide.user.UserReward;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * UserRepository persisting the users into a directory, restored on creation.
+ * <p>
+ * The users are kept in memory by an InMemoryUserRepository. The identity of each user is appended to the users file
+ * when the user is added, then its VisitedLocations and UserRewards are appended, through a UserJournal, to a
+ * MappedRecordLog of fixed-size records.
+ * </p>
+ * <p>
+ * A snapshot compacts the logs: the log is rotated to a new generation, the VisitedLocations kept and the UserRewards
+ * of all users are written to the snapshot file, replaced atomically, then the logs of the previous generations are
+ * deleted. On creation, the snapshot is loaded and the logs from its generation are replayed: the records already in
+ * the snapshot are skipped by their sequence number or by the rewarded attractions ledger.
+ * </p>
+ * <p>
+ * Only the identity, the VisitedLocations and the UserRewards are saved, not the preferences nor the trip deals.
+ * The UserRewards reference their attraction by its AttractionCatalog id: the attraction list must keep its order
+ * between two runs.
+ * </p>
+ *
+ * @see MappedRecordLog
+ * @see UserJournal
+ */
+@Slf4j
+public class PersistentUserRepository implements UserRepository, AutoCloseable {
+    
+    private static final String USERS_FILE = "users.dat";
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final String LOG_PREFIX = "log-";
+    private static final String LOG_SUFFIX = ".dat";
+    
+    private final Path directory;
+    private final AttractionCatalog attractionCatalog;
+    private final InMemoryUserRepository users;
+    private final UserJournal journal = new Journal();
+    
+    private final FileChannel usersChannel;
+    private volatile MappedRecordLog recordLog;
+    private long generation;
+    
+    private ScheduledExecutorService snapshotScheduler;
+    
+    /**
+     * Open the directory and restore the users saved, the directory is created if needed.
+     *
+     * @param directory         the directory of the files.
+     * @param attractionCatalog the catalog resolving the attractions of the UserRewards.
+     * @throws UncheckedIOException if the files cannot be read or written.
+     */
+    public PersistentUserRepository(Path directory, AttractionCatalog attractionCatalog) {
+        this(directory, attractionCatalog, LocationHistorySettings.DEFAULT);
+    }
+    
+    /**
+     * Open the directory and restore the users saved, the directory is created if needed.
+     *
+     * @param directory               the directory of the files.
+     * @param attractionCatalog       the catalog resolving the attractions of the UserRewards.
+     * @param locationHistorySettings the settings of the LocationHistories of the users restored or created.
+     * @throws UncheckedIOException if the files cannot be read or written.
+     */
+    public PersistentUserRepository(Path directory, AttractionCatalog attractionCatalog,
+                                    LocationHistorySettings locationHistorySettings) {
+        this.directory = directory;
+        this.attractionCatalog = attractionCatalog;
+        this.users = new InMemoryUserRepository(InMemoryUserRepository.DEFAULT_SHARD_COUNT, 0,
+                locationHistorySettings);
+        try {
+            Files.createDirectories(directory);
+            long start = System.nanoTime();
+            long usersLength = readUsers();
+            usersChannel = FileChannel.open(directory.resolve(USERS_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            // Drop a user cut by a crash.
+            usersChannel.truncate(usersLength);
+            usersChannel.position(usersLength);
+            
+            long replayFrom = readSnapshot();
+            long lastGeneration = replayFrom - 1;
+            for(long logGeneration : logGenerations()) {
+                if(logGeneration < replayFrom) {
+                    Files.delete(logPath(logGeneration));
+                } else {
+                    replay(logPath(logGeneration));
+                    lastGeneration = logGeneration;
+                }
+            }
+            generation = lastGeneration + 1;
+            recordLog = MappedRecordLog.create(logPath(generation));
+            users.stream()
+                    .forEach(user -> user.setJournal(journal));
+            log.info("Restored " + users.count() + " users from " + directory + " in " +
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        } catch(IOException e) {
+            throw new UncheckedIOException("Cannot restore the users from " + directory, e);
+        }
+    }
+    
+    @Override
+    public LocationHistorySettings getLocationHistorySettings() {
+        return users.getLocationHistorySettings();
+    }
+    
+    @Override
+    public User findByUserName(String userName) {
+        return users.findByUserName(userName);
+    }
+    
+    @Override
+    public User findByUserId(UUID userId) {
+        return users.findByUserId(userId);
+    }
+    
+    /**
+     * Save the user parsed if its userName and its userId are not already used.
+     * <p>
+     * The identity of the user, then its VisitedLocations and UserRewards are written before the user is shared.
+     * </p>
+     *
+     * @param user the user to save.
+     * @return true if the user is saved, false if the userName or the userId is already used.
+     * @throws UncheckedIOException if the user cannot be written.
+     * @see #addAll(Collection)
+     */
+    @Override
+    public synchronized boolean add(User user) {
+        return !addAll(List.of(user)).isEmpty();
+    }
+
+    /**
+     * Save a batch of users, each one if its userName and its userId are not already used.
+     * <p>
+     * The identities of the batch are written to the users file at once.
+     * </p>
+     *
+     * @param batch the users to save.
+     * @return the users saved, in the order of the batch.
+     * @throws UncheckedIOException if the users cannot be written.
+     */
+    @Override
+    public synchronized List<User> addAll(Collection<User> batch) {
+        List<User> newUsers = new ArrayList<>(batch.size());
+        Set<String> userNames = new HashSet<>();
+        Set<UUID> userIds = new HashSet<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * batch.size());
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            for(User user : batch) {
+                if(users.findByUserName(user.getUserName()) == null && users.findByUserId(user.getUserId()) == null &&
+                        userNames.add(user.getUserName()) && userIds.add(user.getUserId())) {
+                    writeUser(output, user);
+                    newUsers.add(user);
+                }
+            }
+            usersChannel.write(ByteBuffer.wrap(bytes.toByteArray()));
+        } catch(IOException e) {
+            throw new UncheckedIOException("Cannot save the users into " + directory, e);
+        }
+        AttractionCatalog.Snapshot attractions = attractionCatalog.getSnapshot();
+        for(User user : newUsers) {
+            journalHistory(user, attractions);
+            user.setJournal(journal);
+            users.add(user);
+        }
+        return newUsers;
+    }
+
+    /**
+     * Write the VisitedLocations and UserRewards of a new user.
+     */
+    private void journalHistory(User user, AttractionCatalog.Snapshot attractions) {
+        LocationHistory.Snapshot visitedLocations = user.getLocationHistory()
+                .snapshot(0);
+        if(visitedLocations.fromSequence() > 0) {
+            recordLog.appendClear(user.getUserId(), visitedLocations.fromSequence());
+        }
+        for(int i = 0; i < visitedLocations.size(); i++) {
+            recordLog.appendLocation(user.getUserId(), visitedLocations.fromSequence() + i,
+                    visitedLocations.latitudes()[i], visitedLocations.longitudes()[i], visitedLocations.times()[i]);
+        }
+        for(UserReward userReward : user.getUserRewards()) {
+            journal.userRewardAdded(user, attractions.idOf(userReward.attraction), userReward);
+        }
+    }
+    
+    @Override
+    public int count() {
+        return users.count();
+    }
+    
+    @Override
+    public int getShardCount() {
+        return users.getShardCount();
+    }
+    
+    @Override
+    public Collection<User> shard(int shard) {
+        return users.shard(shard);
+    }
+    
+    /**
+     * Compact the logs into the snapshot file.
+     * <p>
+     * The users are written while they are tracked: the records appended during the snapshot are kept in the new log.
+     * </p>
+     *
+     * @throws UncheckedIOException if the snapshot cannot be written, the logs are then kept.
+     */
+    public synchronized void snapshot() {
+        long start = System.nanoTime();
+        MappedRecordLog previousLog = recordLog;
+        long snapshotGeneration = generation + 1;
+        try {
+            recordLog = MappedRecordLog.create(logPath(snapshotGeneration));
+        } catch(IOException e) {
+            throw new UncheckedIOException("Cannot rotate the log of " + directory, e);
+        }
+        generation = snapshotGeneration;
+        try {
+            Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try(FileOutputStream file = new FileOutputStream(temporary.toFile());
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                writeSnapshot(output, snapshotGeneration);
+                output.flush();
+                file.getFD()
+                        .sync();
+            }
+            Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            previousLog.close();
+            for(long logGeneration : logGenerations()) {
+                if(logGeneration < snapshotGeneration) {
+                    Files.delete(logPath(logGeneration));
+                }
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException("Cannot write the snapshot of " + directory, e);
+        } finally {
+            // The previous log is kept, closed, to be replayed if the snapshot failed.
+            closeQuietly(previousLog);
+        }
+        log.debug("Snapshot of " + users.count() + " users written in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+    
+    /**
+     * Write a snapshot at a fixed rate in a dedicated thread.
+     *
+     * @param interval the time between two snapshots, nothing is scheduled if zero or negative.
+     */
+    public synchronized void scheduleSnapshots(Duration interval) {
+        if(interval.isZero() || interval.isNegative()) {
+            return;
+        }
+        if(snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-repository-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleAtFixedRate(() -> {
+            try {
+                snapshot();
+            } catch(RuntimeException e) {
+                log.error("User repository snapshot failed, keeping the logs", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * @return the number of records appended to the current log since the last snapshot.
+     */
+    public long getLogSize() {
+        return recordLog.size();
+    }
+    
+    /**
+     * Stop the scheduled snapshots and flush the log, the changes of the users are no longer saved.
+     */
+    @Override
+    public synchronized void close() {
+        if(snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+            snapshotScheduler = null;
+        }
+        try {
+            recordLog.close();
+            usersChannel.close();
+        } catch(IOException e) {
+            throw new UncheckedIOException("Cannot close the files of " + directory, e);
+        }
+    }
+    
+    /**
+     * Write the journal of the users into the current log.
+     */
+    private final class Journal implements UserJournal {
+        
+        @Override
+        public void visitedLocationAppended(User user, long sequence, VisitedLocation visitedLocation) {
+            recordLog.appendLocation(user.getUserId(), sequence, visitedLocation.location.latitude,
+                    visitedLocation.location.longitude, visitedLocation.timeVisited.getTime());
+        }
+        
+        @Override
+        public void visitedLocationsCleared(User user, long sequence) {
+            recordLog.appendClear(user.getUserId(), sequence);
+        }
+        
+        @Override
+        public void userRewardAdded(User user, int attractionId, UserReward userReward) {
+            VisitedLocation visitedLocation = userReward.visitedLocation;
+            recordLog.appendReward(user.getUserId(), attractionId, userReward.getRewardPoints(),
+                    visitedLocation.location.latitude, visitedLocation.location.longitude,
+                    visitedLocation.timeVisited.getTime());
+        }
+    }
+    
+    private void writeUser(DataOutputStream output, User user) throws IOException {
+        output.writeLong(user.getUserId()
+                .getMostSignificantBits());
+        output.writeLong(user.getUserId()
+                .getLeastSignificantBits());
+        output.writeUTF(user.getUserName());
+        output.writeUTF(user.getPhoneNumber());
+        output.writeUTF(user.getEmailAddress());
+    }
+    
+    /**
+     * Read the users file into the InMemoryUserRepository.
+     *
+     * @return the length of the complete users read.
+     */
+    private long readUsers() throws IOException {
+        Path path = directory.resolve(USERS_FILE);
+        if(!Files.exists(path)) {
+            return 0;
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
+        DataInputStream input = new DataInputStream(stream);
+        long length = 0;
+        try {
+            while(stream.available() > 0) {
+                User user = users.newUser(new UUID(input.readLong(), input.readLong()), input.readUTF(),
+                        input.readUTF(), input.readUTF());
+                users.add(user);
+                length = bytes.length - stream.available();
+            }
+        } catch(EOFException e) {
+            log.warn("Dropping the last user of " + path + ", cut at " + length);
+        }
+        return length;
+    }
+    
+    private void writeSnapshot(DataOutputStream output, long snapshotGeneration) throws IOException {
+        AttractionCatalog.Snapshot attractions = attractionCatalog.getSnapshot();
+        output.writeLong(snapshotGeneration);
+        for(int shard = 0; shard < users.getShardCount(); shard++) {
+            for(User user : users.shard(shard)) {
+                writeSnapshot(output, attractions, user);
+            }
+        }
+        output.writeBoolean(false);
+    }
+    
+    private void writeSnapshot(DataOutputStream output, AttractionCatalog.Snapshot attractions, User user)
+            throws IOException {
+        LocationHistory.Snapshot visitedLocations = user.getLocationHistory()
+                .snapshot(0);
+        List<UserReward> userRewards = user.getUserRewards();
+        output.writeBoolean(true);
+        output.writeLong(user.getUserId()
+                .getMostSignificantBits());
+        output.writeLong(user.getUserId()
+                .getLeastSignificantBits());
+        output.writeLong(visitedLocations.fromSequence());
+        output.writeInt(visitedLocations.size());
+        for(int i = 0; i < visitedLocations.size(); i++) {
+            output.writeDouble(visitedLocations.latitudes()[i]);
+            output.writeDouble(visitedLocations.longitudes()[i]);
+            output.writeLong(visitedLocations.times()[i]);
+        }
+        output.writeInt(userRewards.size());
+        for(UserReward userReward : userRewards) {
+            output.writeInt(attractions.idOf(userReward.attraction));
+            output.writeInt(userReward.getRewardPoints());
+            output.writeDouble(userReward.visitedLocation.location.latitude);
+            output.writeDouble(userReward.visitedLocation.location.longitude);
+            output.writeLong(userReward.visitedLocation.timeVisited.getTime());
+        }
+    }
+    
+    /**
+     * Read the snapshot file into the users.
+     *
+     * @return the generation of the first log to replay.
+     */
+    private long readSnapshot() throws IOException {
+        Path path = directory.resolve(SNAPSHOT_FILE);
+        if(!Files.exists(path)) {
+            return 0;
+        }
+        AttractionCatalog.Snapshot attractions = attractionCatalog.getSnapshot();
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            long snapshotGeneration = input.readLong();
+            while(input.readBoolean()) {
+                UUID userId = new UUID(input.readLong(), input.readLong());
+                User user = users.findByUserId(userId);
+                long fromSequence = input.readLong();
+                int size = input.readInt();
+                if(user != null) {
+                    user.getLocationHistory()
+                            .skipTo(fromSequence);
+                }
+                for(int i = 0; i < size; i++) {
+                    double latitude = input.readDouble();
+                    double longitude = input.readDouble();
+                    long time = input.readLong();
+                    if(user != null) {
+                        user.getLocationHistory()
+                                .append(new VisitedLocation(userId, new Location(latitude, longitude), new Date(time)));
+                    }
+                }
+                int rewardCount = input.readInt();
+                for(int i = 0; i < rewardCount; i++) {
+                    int attractionId = input.readInt();
+                    int rewardPoints = input.readInt();
+                    double latitude = input.readDouble();
+                    double longitude = input.readDouble();
+                    long time = input.readLong();
+                    if(user != null) {
+                        addUserReward(attractions, user, attractionId, rewardPoints, latitude, longitude, time);
+                    }
+                }
+            }
+            return snapshotGeneration;
+        }
+    }
+    
+    /**
+     * Apply the records of a log to the users, skipping the records already applied.
+     */
+    private void replay(Path path) throws IOException {
+        AttractionCatalog.Snapshot attractions = attractionCatalog.getSnapshot();
+        long records = 0;
+        try(MappedRecordLog.Reader reader = MappedRecordLog.read(path)) {
+            while(reader.next()) {
+                records++;
+                User user = users.findByUserId(reader.userId());
+                if(user == null) {
+                    continue;
+                }
+                LocationHistory locationHistory = user.getLocationHistory();
+                switch(reader.type()) {
+                    case MappedRecordLog.LOCATION -> {
+                        if(reader.sequence() >= locationHistory.getSequence()) {
+                            if(reader.sequence() > locationHistory.getSequence()) {
+                                locationHistory.skipTo(reader.sequence());
+                            }
+                            locationHistory.append(new VisitedLocation(user.getUserId(),
+                                    new Location(reader.latitude(), reader.longitude()), new Date(reader.time())));
+                        }
+                    }
+                    case MappedRecordLog.CLEAR -> {
+                        if(reader.sequence() >= locationHistory.getSequence()) {
+                            locationHistory.skipTo(reader.sequence());
+                        }
+                    }
+                    case MappedRecordLog.REWARD -> addUserReward(attractions, user, reader.attractionId(),
+                            reader.rewardPoints(), reader.latitude(), reader.longitude(), reader.time());
+                    default -> log.warn("Unknown record type " + reader.type() + " in " + path);
+                }
+            }
+        }
+        log.debug("Replayed " + records + " records of " + path);
+    }
+    
+    private void addUserReward(AttractionCatalog.Snapshot attractions, User user, int attractionId, int rewardPoints,
+                               double latitude, double longitude, long time) {
+        Attraction attraction = attractionId < 0 ? null : attractions.getById(attractionId);
+        if(attraction == null) {
+            log.warn("Dropping the reward of the unknown attraction " + attractionId + " for " + user.getUserId());
+            return;
+        }
+        user.addUserReward(attractionId, new UserReward(
+                new VisitedLocation(user.getUserId(), new Location(latitude, longitude), new Date(time)), attraction,
+                rewardPoints));
+    }
+    
+    private void closeQuietly(MappedRecordLog recordLog) {
+        try {
+            recordLog.close();
+        } catch(IOException e) {
+            log.warn("Cannot close a log of " + directory, e);
+        }
+    }
+    
+    private List<Long> logGenerations() throws IOException {
+        try(Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName()
+                            .toString())
+                    .filter(name -> name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(LOG_PREFIX.length(),
+                            name.length() - LOG_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+    
+    private Path logPath(long logGeneration) {
+        return directory.resolve(LOG_PREFIX + logGeneration + LOG_SUFFIX);
+    }
+}
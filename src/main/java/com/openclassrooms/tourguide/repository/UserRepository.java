@@ -0,0 +1,116 @@
+package com.openclassrooms.tourguide.repository;
+
+import com.openclassrooms.tourguide.user.LocationHistorySettings;
+import com.openclassrooms.tourguide.user.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Storage of the users.
+ * <p>
+ * Users are found by userName or by userId in constant time.
+ * The users are split into a fixed number of shards, that can be walked in parallel without copying the users.
+ * </p>
+ */
+public interface UserRepository {
+    
+    /**
+     * @return the settings of the LocationHistories of the users created by the repository.
+     */
+    default LocationHistorySettings getLocationHistorySettings() {
+        return LocationHistorySettings.DEFAULT;
+    }
+    
+    /**
+     * Create a user with the LocationHistorySettings of the repository, without saving it.
+     *
+     * @return the new user.
+     */
+    default User newUser(UUID userId, String userName, String phoneNumber, String emailAddress) {
+        return new User(userId, userName, phoneNumber, emailAddress, getLocationHistorySettings());
+    }
+    
+    /**
+     * @param userName the userName of the user.
+     * @return the user, or null if unknown.
+     */
+    User findByUserName(String userName);
+    
+    /**
+     * @param userId the id of the user.
+     * @return the user, or null if unknown.
+     */
+    User findByUserId(UUID userId);
+    
+    /**
+     * Save the user parsed if its userName and its userId are not already used.
+     *
+     * @param user the user to save.
+     * @return true if the user is saved, false if the userName or the userId is already used.
+     */
+    boolean add(User user);
+    
+    /**
+     * Save a batch of users, each one if its userName and its userId are not already used.
+     *
+     * @param users the users to save.
+     * @return the users saved, in the order of the batch.
+     */
+    default List<User> addAll(Collection<User> users) {
+        List<User> added = new ArrayList<>(users.size());
+        for(User user : users) {
+            if(add(user)) {
+                added.add(user);
+            }
+        }
+        return added;
+    }
+    
+    /**
+     * @return the number of users.
+     */
+    int count();
+    
+    /**
+     * @return the number of shards.
+     */
+    int getShardCount();
+    
+    /**
+     * Return a live, unmodifiable view of the users of a shard.
+     *
+     * @param shard the shard index, from 0 to getShardCount() - 1.
+     * @return the users of the shard.
+     */
+    Collection<User> shard(int shard);
+    
+    /**
+     * Return the users of a partition: the shards whose index modulo the partition count is the partition index.
+     *
+     * @param partition the partition index, from 0 to partitionCount - 1.
+     * @param partitionCount the number of partitions.
+     * @return a stream of the users of the partition.
+     */
+    default Stream<User> partition(int partition, int partitionCount) {
+        return IntStream.range(0, getShardCount())
+                .filter(shard -> shard % partitionCount == partition)
+                .boxed()
+                .flatMap(shard -> shard(shard).stream());
+    }
+    
+    /**
+     * Return all users, the stream can be made parallel to walk the shards concurrently.
+     *
+     * @return a stream of all users.
+     */
+    default Stream<User> stream() {
+        return IntStream.range(0, getShardCount())
+                .boxed()
+                .flatMap(shard -> shard(shard).stream());
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package of repositories. Contains the storage of the users.
+ */
+package com.openclassrooms.tourguide.repository;
@@ -1,46 +1,130 @@
 package com.openclassrooms.tourguide.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.openclassrooms.tourguide.dto.NearAttractionDto;
 import com.openclassrooms.tourguide.dto.NearAttractionsListDto;
 import com.openclassrooms.tourguide.dto.TripDealsDto;
+import com.openclassrooms.tourguide.dto.UserBatchDto;
 import com.openclassrooms.tourguide.dto.UserLocationDto;
 import com.openclassrooms.tourguide.dto.UserRewardsDto;
+import com.openclassrooms.tourguide.user.LatestLocationIndex;
+import com.openclassrooms.tourguide.user.LocationHistory;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import tripPricer.Provider;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * DtoService is called by the TourGuideController to generate JSON.
  * <p>
  * Call TourGuideService and RewardsService to perform business treatments.
  * </p>
+ * <p>
+ * Each generator has an async version for the controller, which never blocks the calling thread:
+ * the reward points are composed from their futures, the blocking gpsUtil and TripPricer calls run in virtual threads.
+ * The batch generators start the async generation of all users parsed at once, for the streaming endpoints.
+ * The virtual threads are stopped when the DtoService is closed.
+ * </p>
+ * <p>
+ * The NearAttractionsListDto of each user is cached with the version of the user it was generated from,
+ * the version changing with each new VisitedLocation, UserReward or attraction catalog. The version is also the
+ * ETag of the user's responses, for the conditional requests.
+ * </p>
  * @see TourGuideService
  * @see RewardsService
  */
 @Service
-public class DtoService {
+public class DtoService implements AutoCloseable {
+    
+    public static final int DEFAULT_CACHE_SIZE = 100_000;
     
     private final TourGuideService tourGuideService;
     private final RewardsService rewardsService;
     private final UserService userService;
     
+    /**
+     * The virtual threads running the generators waiting on a blocking dependency.
+     */
+    private final ExecutorService blockingCalls = Executors.newThreadPerTaskExecutor(Thread.ofVirtual()
+            .name("dto-service-", 0)
+            .factory());
+    
+    /**
+     * The last NearAttractionsListDto of each user, by userId, the least recently used evicted first.
+     */
+    private final Map<UUID, CachedDto<NearAttractionsListDto>> nearAttractionsCache;
+    
     public DtoService(TourGuideService tourGuideService, RewardsService rewardsService, UserService userService) {
+        this(tourGuideService, rewardsService, userService, DEFAULT_CACHE_SIZE);
+    }
+    
+    /**
+     * @param cacheSize the number of users whose NearAttractionsListDto is cached.
+     */
+    @Autowired
+    public DtoService(TourGuideService tourGuideService, RewardsService rewardsService, UserService userService,
+                      @Value("${tourguide.dto.cache-size:" + DEFAULT_CACHE_SIZE + "}") int cacheSize) {
         this.tourGuideService = tourGuideService;
         this.rewardsService = rewardsService;
         this.userService = userService;
+        this.nearAttractionsCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, CachedDto<NearAttractionsListDto>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+    
+    /**
+     * Stop the virtual threads of the blocking calls, the generators running are interrupted.
+     */
+    @Override
+    public void close() {
+        blockingCalls.shutdownNow();
+    }
+    
+    /**
+     * Return the ETag of the responses of a user: the version of the user's VisitedLocations, UserRewards and of the
+     * attraction catalog.
+     * <p>
+     * Cheap to compute, the controllers check it before generating a response.
+     * </p>
+     *
+     * @param userName the userName parsed to get the User.
+     * @return the ETag, without quotes.
+     * @see #nearAttractionsListGeneratorAsync(String)
+     */
+    public String getETag(String userName) {
+        return versionOf(userService.getUserByUsername(userName)).toETag();
     }
     
     /**
      * Return the NearAttractionListDto to display the JSON into the getNearbyAttractions in the TourGuideController.
      * <p>
-     * For each Attraction in the list parsed, creates a new NearAttractionDto and adds it in the NearAttractionsListDto.
+     * Request the rewardPoints of all Attractions in the list parsed before waiting for them.
+     * For each Attraction, creates a new NearAttractionDto and adds it in the NearAttractionsListDto.
      * </p>
      *
      * @param userName the userName parsed to get the User and called the getNearByAttractions method.
@@ -48,30 +132,88 @@ public class DtoService {
      * @see UserService#getUserByUsername(String)
      * @see TourGuideService#getNearByAttractions(VisitedLocation)
      * @see RewardsService#getDistance(Location, Location)
-     * @see RewardsService#getRewardPoints(Attraction, User)
+     * @see RewardsService#requestRewardPoints(Attraction, User)
      */
     public NearAttractionsListDto nearAttractionsListGenerator(String userName) {
-        List<NearAttractionDto> nearAttractionsList = new ArrayList<>();
-        
-        User user = userService.getUserByUsername(userName);
-        List<Attraction> attractions = tourGuideService.getNearByAttractions(user.getLastVisitedLocation());
-        
-        for(Attraction attraction : attractions) {
-            nearAttractionsList.add(NearAttractionDto.builder()
-                    .name(attraction.attractionName)
-                    .longitude(attraction.longitude)
-                    .latitude(attraction.latitude)
-                    .userLongitude(user.getLastVisitedLocation().location.longitude)
-                    .userLatitude(user.getLastVisitedLocation().location.latitude)
-                    .distance(rewardsService.getDistance(attraction, user.getLastVisitedLocation().location))
-                    .rewardPoints(rewardsService.getRewardPoints(attraction, user))
-                    .build());
+        return nearAttractionsListGeneratorAsync(userName).join();
+    }
+    
+    /**
+     * Async version of nearAttractionsListGenerator: the NearAttractionsListDto is built in the thread completing the
+     * last rewardPoint.
+     *
+     * @param userName the userName parsed to get the User and called the getNearByAttractions method.
+     * @return a future completed with the NearAttractionsListDto object.
+     * @see #nearAttractionsListGenerator(String)
+     */
+    public CompletableFuture<NearAttractionsListDto> nearAttractionsListGeneratorAsync(String userName) {
+        return nearAttractionsList(userService.getUserByUsername(userName));
+    }
+    
+    /**
+     * Batch version of nearAttractionsListGeneratorAsync, the rewardPoints of all users are requested at once.
+     *
+     * @param userBatch the users parsed.
+     * @return the futures of the NearAttractionsListDto objects by userId, in the order of the users.
+     * @see #getUsers(UserBatchDto)
+     */
+    public Map<UUID, CompletableFuture<NearAttractionsListDto>> nearAttractionsListsGenerator(UserBatchDto userBatch) {
+        return byUserId(getUsers(userBatch), user -> generate(() -> nearAttractionsList(user)));
+    }
+    
+    /**
+     * Return the cached NearAttractionsListDto of the user if the user did not change since, generate it otherwise.
+     * <p>
+     * The version is read before the generation: a DTO generated while the user changes is cached under the older
+     * version, and replaced by the next request.
+     * </p>
+     */
+    private CompletableFuture<NearAttractionsListDto> nearAttractionsList(User user) {
+        UserVersion version = versionOf(user);
+        synchronized(nearAttractionsCache) {
+            CachedDto<NearAttractionsListDto> cachedDto = nearAttractionsCache.get(user.getUserId());
+            if(cachedDto != null && cachedDto.version()
+                    .equals(version)) {
+                return CompletableFuture.completedFuture(cachedDto.dto());
+            }
         }
+        return generateNearAttractionsList(user).thenApply(nearAttractionsListDto -> {
+            synchronized(nearAttractionsCache) {
+                nearAttractionsCache.put(user.getUserId(), new CachedDto<>(version, nearAttractionsListDto));
+            }
+            return nearAttractionsListDto;
+        });
+    }
+    
+    private CompletableFuture<NearAttractionsListDto> generateNearAttractionsList(User user) {
+        VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+        List<Attraction> attractions = tourGuideService.getNearByAttractions(lastVisitedLocation);
+        List<CompletableFuture<Integer>> rewardPoints = attractions.stream()
+                .map(attraction -> rewardsService.requestRewardPoints(attraction, user))
+                .toList();
         
-        return NearAttractionsListDto.builder()
-                .userId(user.getUserId())
-                .nearAttractionList(nearAttractionsList)
-                .build();
+        return CompletableFuture.allOf(rewardPoints.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    List<NearAttractionDto> nearAttractionsList = new ArrayList<>();
+                    for(int i = 0; i < attractions.size(); i++) {
+                        Attraction attraction = attractions.get(i);
+                        nearAttractionsList.add(NearAttractionDto.builder()
+                                .name(attraction.attractionName)
+                                .longitude(attraction.longitude)
+                                .latitude(attraction.latitude)
+                                .userLongitude(lastVisitedLocation.location.longitude)
+                                .userLatitude(lastVisitedLocation.location.latitude)
+                                .distance(rewardsService.getDistance(attraction, lastVisitedLocation.location))
+                                .rewardPoints(rewardPoints.get(i)
+                                        .join())
+                                .build());
+                    }
+                    
+                    return NearAttractionsListDto.builder()
+                            .userId(user.getUserId())
+                            .nearAttractionList(nearAttractionsList)
+                            .build();
+                });
     }
     
     /**
@@ -85,7 +227,11 @@ public class DtoService {
      * @see UserService#getUserLocation(String)
      */
     public UserLocationDto userLocationGenerator(String userName) {
-        VisitedLocation userLocation = userService.getUserLocation(userName);
+        return userLocation(userService.getUserByUsername(userName));
+    }
+    
+    private UserLocationDto userLocation(User user) {
+        VisitedLocation userLocation = userService.getUserLocation(user);
         return UserLocationDto.builder()
                 .userId(userLocation.userId)
                 .location(userLocation.location)
@@ -93,6 +239,29 @@ public class DtoService {
                 .build();
     }
     
+    /**
+     * Async version of userLocationGenerator, run in a virtual thread as the user may be located by gpsUtil.
+     *
+     * @param userName the userName parsed to call the getUserLocation method.
+     * @return a future completed with the UserLocationDto object.
+     * @see #userLocationGenerator(String)
+     */
+    public CompletableFuture<UserLocationDto> userLocationGeneratorAsync(String userName) {
+        return CompletableFuture.supplyAsync(() -> userLocationGenerator(userName), blockingCalls);
+    }
+    
+    /**
+     * Batch version of userLocationGeneratorAsync, each user is located in its own virtual thread.
+     *
+     * @param userBatch the users parsed.
+     * @return the futures of the UserLocationDto objects by userId, in the order of the users.
+     * @see #getUsers(UserBatchDto)
+     */
+    public Map<UUID, CompletableFuture<UserLocationDto>> userLocationsGenerator(UserBatchDto userBatch) {
+        return byUserId(getUsers(userBatch),
+                user -> CompletableFuture.supplyAsync(() -> userLocation(user), blockingCalls));
+    }
+    
     /**
      * Return the TripDealsDto to display the JSON into the getTripDeals in the TourGuideController.
      * <p>
@@ -114,6 +283,17 @@ public class DtoService {
                 .build();
     }
     
+    /**
+     * Async version of TripDealListGenerator, run in a virtual thread as TripPricer may be called.
+     *
+     * @param userName the userName parsed to get the User and called the getTripDeals method.
+     * @return a future completed with the TripDealsDto object.
+     * @see #TripDealListGenerator(String)
+     */
+    public CompletableFuture<TripDealsDto> TripDealListGeneratorAsync(String userName) {
+        return CompletableFuture.supplyAsync(() -> TripDealListGenerator(userName), blockingCalls);
+    }
+    
     /**
      * Return the UserRewardsDto to display the JSON into the getRewards in the TourGuideController.
      * <p>
@@ -126,7 +306,10 @@ public class DtoService {
      * @see UserService#getUserRewards(User)
      */
     public UserRewardsDto UserRewardsListGenerator(String userName) {
-        User user = userService.getUserByUsername(userName);
+        return userRewardsList(userService.getUserByUsername(userName));
+    }
+    
+    private UserRewardsDto userRewardsList(User user) {
         List<UserReward> userRewards = userService.getUserRewards(user);
         
         return UserRewardsDto.builder()
@@ -134,4 +317,132 @@ public class DtoService {
                 .userRewards(userRewards)
                 .build();
     }
+    
+    /**
+     * Async version of UserRewardsListGenerator, completed at once as the rewards are read in memory.
+     *
+     * @param userName the userName parsed to get the User and called getUserRewards and getUserByUsername methods.
+     * @return a future completed with the UserRewardsDto object.
+     * @see #UserRewardsListGenerator(String)
+     */
+    public CompletableFuture<UserRewardsDto> UserRewardsListGeneratorAsync(String userName) {
+        return CompletableFuture.completedFuture(UserRewardsListGenerator(userName));
+    }
+    
+    /**
+     * Batch version of UserRewardsListGeneratorAsync.
+     *
+     * @param userBatch the users parsed.
+     * @return the completed futures of the UserRewardsDto objects by userId, in the order of the users.
+     * @see #getUsers(UserBatchDto)
+     */
+    public Map<UUID, CompletableFuture<UserRewardsDto>> userRewardsListsGenerator(UserBatchDto userBatch) {
+        return byUserId(getUsers(userBatch),
+                user -> generate(() -> CompletableFuture.completedFuture(userRewardsList(user))));
+    }
+    
+    /**
+     * Return the users of a batch request.
+     * <p>
+     * The users of the userNames come first, then the users of the userIds.
+     * The unknown users are skipped, a user designated twice is returned once.
+     * </p>
+     *
+     * @param userBatch the userNames and userIds parsed, each list may be null.
+     * @return the users found.
+     * @see UserService#getUserByUsername(String)
+     * @see UserService#getUserById(UUID)
+     */
+    public List<User> getUsers(UserBatchDto userBatch) {
+        Set<User> users = new LinkedHashSet<>();
+        if(userBatch.userNames() != null) {
+            userBatch.userNames()
+                    .stream()
+                    .map(userService::getUserByUsername)
+                    .filter(Objects::nonNull)
+                    .forEach(users::add);
+        }
+        if(userBatch.userIds() != null) {
+            userBatch.userIds()
+                    .stream()
+                    .map(userService::getUserById)
+                    .filter(Objects::nonNull)
+                    .forEach(users::add);
+        }
+        return new ArrayList<>(users);
+    }
+    
+    private static <T> Map<UUID, CompletableFuture<T>> byUserId(List<User> users,
+                                                                Function<User, CompletableFuture<T>> generator) {
+        return users.stream()
+                .collect(Collectors.toMap(User::getUserId, generator, (first, second) -> first, LinkedHashMap::new));
+    }
+    
+    /**
+     * Start the generation of the DTO of one user of a batch, a failure completing the future instead of failing
+     * the whole batch.
+     */
+    private static <T> CompletableFuture<T> generate(Supplier<CompletableFuture<T>> generator) {
+        try {
+            return generator.get();
+        } catch(RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    /**
+     * Write the latest location of all users, as a JSON object of the UserLocationDto by userId.
+     * <p>
+     * The locations are read from the LatestLocationIndex and written field by field, without a DTO per user, in the
+     * shape of the UserLocationDto of getLocation in the TourGuideController. The timeVisited is written by the codec
+     * of the generator, so it has the date format of the other responses.
+     * </p>
+     *
+     * @param generator the generator of the response, with an ObjectCodec; flushed but not closed.
+     * @throws IOException if the response cannot be written.
+     * @see UserService#getLatestLocations()
+     * @see UserLocationDto
+     */
+    public void writeAllCurrentLocations(JsonGenerator generator) throws IOException {
+        LatestLocationIndex.Cursor cursor = userService.getLatestLocations()
+                .cursor();
+        // Reused for all users, the codec writes it before the next one.
+        Date timeVisited = new Date();
+        generator.writeStartObject();
+        while(cursor.next()) {
+            String userId = cursor.userId()
+                    .toString();
+            generator.writeObjectFieldStart(userId);
+            generator.writeStringField("userId", userId);
+            generator.writeObjectFieldStart("location");
+            generator.writeNumberField("longitude", cursor.longitude());
+            generator.writeNumberField("latitude", cursor.latitude());
+            generator.writeEndObject();
+            timeVisited.setTime(cursor.timeVisited());
+            generator.writeFieldName("timeVisited");
+            generator.writeObject(timeVisited);
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.flush();
+    }
+    
+    private UserVersion versionOf(User user) {
+        LocationHistory locationHistory = user.getLocationHistory();
+        return new UserVersion(locationHistory.getSequence(), locationHistory.size(), user.getUserRewards()
+                .size(), tourGuideService.getAttractionsVersion());
+    }
+    
+    /**
+     * The version of a user: its number of VisitedLocations ever added and still kept, changing on a clear,
+     * its number of UserRewards and the version of the attraction catalog.
+     */
+    private record UserVersion(long locationSequence, int locationCount, int rewardCount, long attractionsVersion) {
+        
+        private String toETag() {
+            return locationSequence + "-" + locationCount + "-" + rewardCount + "-" + attractionsVersion;
+        }
+    }
+    
+    private record CachedDto<T>(UserVersion version, T dto) {}
 }
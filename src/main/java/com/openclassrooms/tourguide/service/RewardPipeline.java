@@ -0,0 +1,191 @@
+package com.openclassrooms.tourguide.service;
+
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.VisitedLocation;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process pipeline to calculate the UserRewards when a new VisitedLocation is tracked.
+ * <p>
+ * Each new VisitedLocation is published into a bounded queue, consumed by reward workers running in virtual threads.
+ * A user is queued once: the reward calculation evaluates all the VisitedLocations added since the last pass,
+ * so a VisitedLocation published while its user is already queued is covered by the queued calculation.
+ * </p>
+ * <p>
+ * When the queue is full, the publisher is blocked until a worker takes a user: the tracking slows down to the
+ * reward throughput instead of filling the memory.
+ * The queue depth and the event counters are exposed for monitoring.
+ * </p>
+ *
+ * @see RewardsService#calculateUserRewards(User)
+ */
+@Slf4j
+public class RewardPipeline implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 10_000;
+    public static final int DEFAULT_WORKERS = 64;
+
+    private final RewardsService rewardsService;
+    private final BlockingQueue<User> queue;
+    private final Set<UUID> queuedUsers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    public RewardPipeline(RewardsService rewardsService) {
+        this(rewardsService, DEFAULT_CAPACITY, DEFAULT_WORKERS);
+    }
+
+    public RewardPipeline(RewardsService rewardsService, int capacity, int workerNumber) {
+        this.rewardsService = rewardsService;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        for(int i = 0; i < workerNumber; i++) {
+            workers.add(Thread.ofVirtual()
+                    .name("reward-worker-" + i)
+                    .start(this::work));
+        }
+    }
+
+    /**
+     * Publish a new VisitedLocation of the user parsed.
+     * <p>
+     * Block while the queue is full.
+     * </p>
+     *
+     * @param user            the user who visited the location.
+     * @param visitedLocation the new VisitedLocation, already added to the user's visitedLocations.
+     * @throws InterruptedException if interrupted while waiting for a free place in the queue.
+     */
+    public void publish(User user, VisitedLocation visitedLocation) throws InterruptedException {
+        publishedCount.increment();
+        if(!queuedUsers.add(user.getUserId())) {
+            coalescedCount.increment();
+            return;
+        }
+        try {
+            queue.put(user);
+        } catch(InterruptedException e) {
+            queuedUsers.remove(user.getUserId());
+            throw e;
+        }
+    }
+
+    /**
+     * Wait until the queue is empty and no calculation is running.
+     *
+     * @param timeout the maximum time to wait.
+     * @return true if the pipeline is idle, false if the timeout elapsed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while(!queuedUsers.isEmpty() || inProgress.get() > 0) {
+            if(System.nanoTime() > deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of users waiting in the queue.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of users that can be queued before the publishers are blocked.
+     */
+    public int getRemainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    /**
+     * @return the number of reward calculations running.
+     */
+    public int getInProgress() {
+        return inProgress.get();
+    }
+
+    /**
+     * @return the number of VisitedLocations published.
+     */
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * @return the number of VisitedLocations published while their user was already queued.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * @return the number of reward calculations done.
+     */
+    public long getProcessedCount() {
+        return processedCount.sum();
+    }
+
+    /**
+     * @return the number of reward calculations failed.
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Stop the workers, the queued users are dropped.
+     */
+    @Override
+    public void close() {
+        workers.forEach(Thread::interrupt);
+        queue.clear();
+        queuedUsers.clear();
+    }
+
+    /**
+     * The worker loop: take a user, allow new publications for this user, then calculate its rewards.
+     */
+    private void work() {
+        while(!Thread.currentThread()
+                .isInterrupted()) {
+            User user;
+            try {
+                user = queue.take();
+            } catch(InterruptedException e) {
+                return;
+            }
+            inProgress.incrementAndGet();
+            queuedUsers.remove(user.getUserId());
+            try {
+                rewardsService.calculateUserRewards(user);
+                processedCount.increment();
+            } catch(RuntimeException e) {
+                failedCount.increment();
+                log.error("Reward calculation failed for " + user.getUserId(), e);
+            } finally {
+                inProgress.decrementAndGet();
+            }
+        }
+    }
+}
@@ -1,56 +1,79 @@
 package com.openclassrooms.tourguide.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.attraction.GreatCircle;
+import com.openclassrooms.tourguide.gateway.RewardPointsGateway;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
-import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.user.LocationHistory;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
-import tripPricer.TripPricer;
 
 /**
  * Service class to perform rewards treatments
  * <p>
- * Required the GpsUtil external dependency to get the Attraction list.
- * Required the RewardCentral external dependency to perform points attribution.
+ * Required the AttractionCatalog to get the Attraction list.
+ * Required the RewardPointsGateway to perform points attribution with the RewardClient external dependency.
  * </p>
  * <p>
- * Use ExecutorService to perform multiThreads treatments.
+ * The calculations of a list of users run in a dedicated ForkJoinPool, split by ranges of users:
+ * the users are calculated in parallel, each user sequentially, so the common pool is never used.
+ * </p>
+ * <p>
+ * The calculations of all users and of each user are timed.
  * </p>
  *
- * @see GpsUtil
- * @see RewardCentral
+ * @see AttractionCatalog
+ * @see RewardPointsGateway
  */
 @Service
 @Slf4j
-public class RewardsService {
-    private final RewardCentral rewardsCentral;
+public class RewardsService implements AutoCloseable {
+    private final RewardPointsGateway rewardPointsGateway;
+    private final AttractionCatalog attractionCatalog;
+    
+    /**
+     * The number of users calculated by a leaf task of the ForkJoinPool.
+     */
+    private static final int USERS_PER_TASK = 16;
     
-    public RewardsService(RewardCentral rewardsCentral) {
-        this.rewardsCentral = rewardsCentral;
+    private final ForkJoinPool rewardsPool;
+    
+    @Autowired
+    public RewardsService(RewardPointsGateway rewardPointsGateway, AttractionCatalog attractionCatalog) {
+        this(rewardPointsGateway, attractionCatalog, Runtime.getRuntime()
+                .availableProcessors());
     }
     
     /**
-     * Convert unit form nautical mile to mile.
+     * @param parallelism the number of threads calculating the users of a list in parallel.
      */
-    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+    public RewardsService(RewardPointsGateway rewardPointsGateway, AttractionCatalog attractionCatalog,
+                          int parallelism) {
+        this.rewardPointsGateway = rewardPointsGateway;
+        this.attractionCatalog = attractionCatalog;
+        this.rewardsPool = new ForkJoinPool(parallelism);
+    }
     
     /**
      * The default proximity in miles.
@@ -71,52 +94,66 @@ public class RewardsService {
      */
     private final int attractionProximityRange = 200;
     
+    private final GreatCircle.Radius attractionProximityRadius = GreatCircle.radius(attractionProximityRange);
+    
+    
+    private final Timer allUsersTimer = TourGuideMetrics.timer(TourGuideMetrics.REWARDS_ALL_USERS,
+            "The rewards calculation of a list of users");
+    
+    private final Timer userTimer = TourGuideMetrics.timer(TourGuideMetrics.REWARDS_USER,
+            "The rewards calculation of a user");
     
-    private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+    /**
+     * Stop the threads of the rewardsPool.
+     */
+    @Override
+    public void close() {
+        rewardsPool.shutdownNow();
+    }
     
     /**
      * Method to calculate the UserRewards of a List<User>.
      * <p>
      * The calculation is slow because of the RewardCentral response.
-     * To overcome this slowdown the executorService managed a ThreadPool and generate virtualThreads for each iterate.
+     * The list is split into UserRewardsTasks run by the rewardsPool: the proximity scan of each user runs in a pool
+     * thread and requests the reward points without waiting them, so the pool threads never block.
+     * The caller then waits for the UserRewards of all users.
      * </p>
      *
      * @param users the List<User>
      * @see #calculateUserRewards(User)
-     * @see RewardCentral
+     * @see RewardPointsGateway
      */
     public void calculateAllUsersRewards(List<User> users) {
-        List<Future<List<UserReward>>> futures = new ArrayList<>();
-        for(User user : users) {
-            Future<List<UserReward>> future = executorService.submit(new CalculateUserRewardsCallable(user, this));
-            futures.add(future);
-        }
-        
-        List<List<UserReward>> userRewardsLists = new ArrayList<>();
-        for(Future<List<UserReward>> future : futures) {
-            try {
-                userRewardsLists.add(future.get());
-                executorService.shutdown();
-            } catch(InterruptedException | ExecutionException e) {
-                throw new RuntimeException(e);
-            }
-        }
+        Timer.Sample sample = Timer.start();
+        @SuppressWarnings("unchecked")
+        CompletableFuture<List<UserReward>>[] userRewards = new CompletableFuture[users.size()];
+        rewardsPool.invoke(new UserRewardsTask(users, 0, users.size(), userRewards));
+        CompletableFuture.allOf(userRewards)
+                .join();
         
-        log.debug("********** calculateAllUsersRewards calculate: " + userRewardsLists.size() +
-                " List of UserRewards. **********");
+        sample.stop(allUsersTimer);
+        log.debug("********** calculateAllUsersRewards calculate: " + Arrays.stream(userRewards)
+                .mapToInt(future -> future.join()
+                        .size())
+                .sum() + " new UserRewards for " + users.size() + " users. **********");
     }
     
     
     /**
      * Return if the distance between the attraction and the location parsed is superior to the attractionProximityRange.
+     * <p>
+     * The range is converted once into a GreatCircle.Radius, the check compares a cosine without arc cosine.
+     * </p>
      *
      * @param attraction the attraction parsed, to extract the attraction location.
      * @param location   the location parsed.
      * @return false if superior and true if not.
-     * @see #getDistance(Location, Location)
+     * @see GreatCircle#isWithin(double, double, double, double, GreatCircle.Radius)
      */
     public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
-        return (getDistance(attraction, location) < attractionProximityRange);
+        return GreatCircle.isWithin(attraction.latitude, attraction.longitude, location.latitude, location.longitude,
+                attractionProximityRadius);
     }
     
     
@@ -124,46 +161,33 @@ public class RewardsService {
      * Method to calculate the UserRewards of an User.
      *
      * <p>
-     * The calculation is slow because of the RewardCentral response.
-     * To overcome this slowdown the executorService managed a ThreadPool and generate virtualThreads for each iterate.
+     * The calculation runs in the caller thread, a RewardPipeline worker or a test.
+     * The slow RewardCentral calls are cached and run concurrently by the RewardPointsGateway.
      * </p>
      *
      * @param user the User parsed.
-     * @return a List of UserReward.
-     * @see #calculateUserRewards(User)
-     * @see RewardCentral
+     * @return a List of the new UserReward.
+     * @see RewardPipeline
+     * @see RewardPointsGateway
      */
     public List<UserReward> calculateUserRewards(User user) {
-        
-        Callable<List<UserReward>> callable = new CalculateUserRewardsCallable(user, this);
-        Future<List<UserReward>> future = executorService.submit(callable);
-        
-        try {
-            return future.get();
-        } catch(InterruptedException | ExecutionException e) {
-            throw new RuntimeException(e);
-        }
+        return new CalculateUserRewardsCallable(user, this).call();
     }
     
     /**
      * Return the distance between two Locations parsed.
+     * <p>
+     * The exact distance, for the DTO output, computed by the GreatCircle kernel of the reward checks, which compare
+     * GreatCircle.Radius instead.
+     * </p>
      *
      * @param loc1 first location.
      * @param loc2 second location.
      * @return the distance in miles (double).
+     * @see GreatCircle#miles(double)
      */
     protected double getDistance(Location loc1, Location loc2) {
-        
-        double lat1 = Math.toRadians(loc1.latitude);
-        double lon1 = Math.toRadians(loc1.longitude);
-        double lat2 = Math.toRadians(loc2.latitude);
-        double lon2 = Math.toRadians(loc2.longitude);
-        
-        double angle =
-                Math.acos(Math.sin(lat1) * Math.sin(lat2) + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
-        
-        double nauticalMiles = 60 * Math.toDegrees(angle);
-        return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+        return GreatCircle.miles(GreatCircle.cosAngle(loc1.latitude, loc1.longitude, loc2.latitude, loc2.longitude));
     }
     
     /**
@@ -174,29 +198,77 @@ public class RewardsService {
      * @param attraction the attraction visited.
      * @param user       the user connected.
      * @return the rewardPoint (int).
-     * @see RewardCentral#getAttractionRewardPoints(UUID, UUID)
+     * @see #requestRewardPoints(Attraction, User)
      */
     protected int getRewardPoints(Attraction attraction, User user) {
-        return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+        return requestRewardPoints(attraction, user).join();
+    }
+    
+    /**
+     * Request the rewardPoint of the attraction for the user to the RewardPointsGateway, without waiting the response.
+     * <p>
+     * The requests are cached and run concurrently by the gateway, callers should request all their points before joining.
+     * </p>
+     *
+     * @param attraction the attraction visited.
+     * @param user       the user connected.
+     * @return a future completed with the rewardPoint.
+     * @see RewardPointsGateway#getRewardPoints(UUID, UUID)
+     */
+    protected CompletableFuture<Integer> requestRewardPoints(Attraction attraction, User user) {
+        return rewardPointsGateway.getRewardPoints(attraction.attractionId, user.getUserId());
     }
     
     
     /**
-     * The Callable class to create Threads in the RewardService class to calculate the userRewards.
+     * The ForkJoinTask starting the UserRewards calculation of a range of users.
      * <p>
-     * Required the GpsUtil external dependency to get the Attraction list.
-     * Required the RewardService to perform distance and rewards treatments.
+     * A range longer than USERS_PER_TASK is split in two halves, a shorter one is calculated user by user.
+     * Each task writes only the future of its own users into the shared array, at the user position.
+     * </p>
+     */
+    private class UserRewardsTask extends RecursiveAction {
+        
+        private final List<User> users;
+        private final int from;
+        private final int to;
+        private final CompletableFuture<List<UserReward>>[] userRewards;
+        
+        private UserRewardsTask(List<User> users, int from, int to, CompletableFuture<List<UserReward>>[] userRewards) {
+            this.users = users;
+            this.from = from;
+            this.to = to;
+            this.userRewards = userRewards;
+        }
+        
+        @Override
+        protected void compute() {
+            if(to - from <= USERS_PER_TASK) {
+                for(int i = from; i < to; i++) {
+                    userRewards[i] = new CalculateUserRewardsCallable(users.get(i), RewardsService.this).calculate();
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new UserRewardsTask(users, from, middle, userRewards),
+                    new UserRewardsTask(users, middle, to, userRewards));
+        }
+    }
+    
+    /**
+     * The Callable class to calculate the userRewards of a user in the calling thread.
+     * <p>
+     * Required the RewardService to get the AttractionCatalog and perform rewards treatments.
+     * The rewarded attractions are checked in the user's ledger by their dense id.
      * </p>
      *
-     * @see GpsUtil
+     * @see AttractionCatalog
      * @see RewardsService
-     * @see TripPricer
      */
     @Slf4j
     private static class CalculateUserRewardsCallable implements Callable<List<UserReward>> {
         
         private final User user;
-        private final GpsUtil gpsUtil = new GpsUtil();
         private final RewardsService rewardsService;
         
         private CalculateUserRewardsCallable(User user, RewardsService rewardsService) {
@@ -205,20 +277,37 @@ public class RewardsService {
         }
         
         /**
-         * Call method override from Callable, calculate the actual UserRewards of a User.
-         * <p>
-         * Call the userRewardListFilter method with the user's UserRewards to get a List<Attraction> without Attractions rewarded.
-         * Call the nearAttraction method with all combinations of user's VisitedLocation and Attraction of the list returned by the previous step.
-         * If nearAttraction is true, add the combination in to a Map<Attraction, VisitedLocation>.
-         * Finally parse the map to the mapToSetUserRewards to add the new UserRewards to the User.
-         * </p>
+         * Call method override from Callable, calculate the actual UserRewards of a User and wait for them.
          *
-         * @see User
-         * @see #nearAttraction(VisitedLocation, Attraction)
-         * @see #mapToSetUserRewards(Map, User)
+         * @see #calculate()
          */
         @Override
         public List<UserReward> call() {
+            return calculate().join();
+        }
+        
+        /**
+         * Calculate the actual UserRewards of a User, without waiting for the reward points.
+         * <p>
+         * Get the user's reward watermark: the VisitedLocations before it were already evaluated with the same rules.
+         * Copy the new VisitedLocations from the user's LocationHistory without blocking the tracking.
+         * For each new VisitedLocation, in order, query the attraction index for the ids of the Attractions within the proximityBuffer,
+         * converted once into a GreatCircle.Radius, with the primitive coordinates of the LocationHistory.Snapshot.
+         * If the Attraction is not rewarded in the user's ledger, keep the first VisitedLocation position at the attraction id.
+         * The scan is sequential: the parallelism is across users, the calculation of a user stays in its thread.
+         * Finally parse the array to the mapToSetUserRewards to add the new UserRewards to the User, and advance the watermark
+         * when they are added.
+         * </p>
+         *
+         * @return a future completed with the new UserRewards, when all their reward points are received.
+         * @see User#getRewardWatermark(long)
+         * @see LocationHistory#snapshot(long)
+         * @see User#isAttractionRewarded(int)
+         * @see AttractionIndex#forEachIdWithinRadius(double, double, GreatCircle.Radius, java.util.function.IntConsumer)
+         * @see #mapToSetUserRewards(AttractionCatalog.Snapshot, LocationHistory.Snapshot, int[], User)
+         */
+        private CompletableFuture<List<UserReward>> calculate() {
+            Timer.Sample sample = Timer.start();
             
             log.debug("CalculateUserRewardsCallable n° " + Thread.currentThread()
                     .getName() + " started.");
@@ -226,102 +315,102 @@ public class RewardsService {
             log.debug("UserRewards size before update: " + user.getUserRewards()
                     .size());
             
-            List<Attraction> attractions = userRewardListFilter(user.getUserRewards());
-            Map<Attraction, VisitedLocation> newUserRewardsMap = new HashMap<>();
+            AttractionCatalog.Snapshot attractions = rewardsService.attractionCatalog.getSnapshot();
+            int proximityBuffer = rewardsService.getProximityBuffer();
+            GreatCircle.Radius radius = GreatCircle.radius(proximityBuffer);
+            long evaluationStamp = evaluationStamp(attractions, proximityBuffer);
             
-            user.getVisitedLocations()
-                    .parallelStream()
-                    .forEach(visitedLocation -> {
-                        attractions.parallelStream()
-                                .forEach(attraction -> {
-                                    if(nearAttraction(visitedLocation, attraction)) {
-                                        newUserRewardsMap.put(attraction, visitedLocation);
-                                    }
-                                });
-                    });
+            LocationHistory.Snapshot visitedLocations = user.getLocationHistory()
+                    .snapshot(user.getRewardWatermark(evaluationStamp));
+            log.debug("Evaluates " + visitedLocations.size() + " new VisitedLocations.");
             
-            List<UserReward> userRewards = mapToSetUserRewards(newUserRewardsMap, user);
-            log.debug("UserRewards size after update: " + user.getUserRewards()
-                    .size());
-            log.debug("CalculateUserRewardsCallable ended.");
-            return userRewards;
+            int[] newUserRewardsLocations = new int[attractions.idCapacity()];
+            Arrays.fill(newUserRewardsLocations, -1);
+            
+            AttractionIndex index = attractions.index();
+            for(int position = 0; position < visitedLocations.size(); position++) {
+                int visitedPosition = position;
+                index.forEachIdWithinRadius(visitedLocations.latitudes()[position],
+                        visitedLocations.longitudes()[position], radius, attractionId -> {
+                            if(newUserRewardsLocations[attractionId] < 0 && !user.isAttractionRewarded(attractionId)) {
+                                newUserRewardsLocations[attractionId] = visitedPosition;
+                            }
+                        });
+            }
+            
+            return mapToSetUserRewards(attractions, visitedLocations, newUserRewardsLocations, user).thenApply(
+                    userRewards -> {
+                        user.advanceRewardWatermark(evaluationStamp, visitedLocations.toSequence());
+                        log.debug("UserRewards size after update: " + user.getUserRewards()
+                                .size());
+                        log.debug("CalculateUserRewardsCallable ended.");
+                        sample.stop(rewardsService.userTimer);
+                        return userRewards;
+                    });
         }
         
         /**
-         * Method to get all Attractions that are not present in the user's UserRewards.
+         * Method to identify the reward rules: the version of the attraction catalog and the proximityBuffer.
          * <p>
-         * Call getAttractions method of the GpsUtil lib to create a List<Attraction> of all attractions.
-         * Map the List<UserReward> parsed in to a List<String> of name of all UserReward's Attractions.
+         * When one of them changes, the user's VisitedLocations already evaluated must be evaluated again.
          * </p>
          *
-         * @param userRewards the user's UserReward list.
-         * @return a List<Attraction> of all attraction that are not present in the initial List<UserReward>.
+         * @param attractions     the catalog Snapshot.
+         * @param proximityBuffer the proximityBuffer in miles.
+         * @return the catalog version in the high 32 bits and the proximityBuffer in the low 32 bits.
          */
-        private List<Attraction> userRewardListFilter(List<UserReward> userRewards) {
-            List<Attraction> attractions = gpsUtil.getAttractions();
-            List<String> userRewardsAttractionList = userRewards.stream()
-                    .map(userReward -> userReward.getAttraction().attractionName)
-                    .toList();
-            return attractions.parallelStream()
-                    .filter(attraction -> !userRewardsAttractionList.contains(attraction.attractionName))
-                    .toList();
-        }
-        
-        /**
-         * Method to verify if the distance between VisitedLocation and the attraction is less the proximityBuffer value.
-         *
-         * @param visitedLocation the user's location.
-         * @param attraction      to get the attraction location.
-         * @return true if the distance is less and false if more.
-         * @see RewardsService#getDistance(Location, Location)
-         */
-        private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-            return rewardsService.getDistance(attraction, visitedLocation.location) <
-                    rewardsService.getProximityBuffer();
+        private static long evaluationStamp(AttractionCatalog.Snapshot attractions, int proximityBuffer) {
+            return (attractions.version() << 32) | (proximityBuffer & 0xFFFFFFFFL);
         }
         
         /**
          * Method to add new UserRewards in to the user's userRewards.
          * <p>
-         * Get a Map<Attraction, VisitedLocation> and a User.
-         * For each pair key/value, create a new UserReward and add it in to a List<UserRewards>.
-         * Finally call the addUserReward method of the User parsed to save the list.
+         * Get an array of VisitedLocation positions indexed by attraction id and a User.
+         * For each VisitedLocation, request the rewardPoint of the Attraction with the same id.
+         * When all points are received, in the thread completing the last one, create the new UserRewards and call the
+         * addUserReward method of the User parsed to save each UserReward in the user's ledger.
          * </p>
          * <p>
-         * The calculation is slow because of the call of the getRewardPoints method who call the rewardCentral API.
-         * To overcome this slowdown the executorService managed a ThreadPool and generate virtualThreads for each iterate.
+         * The calculation is slow because of the rewardCentral API.
+         * All points are requested before waiting, the RewardPointsGateway runs the calls concurrently and caches them.
          * </p>
          *
-         * @param newUserRewardsMap the map with all data to create new UserRewards.
-         * @param user              the user required UserReward update.
-         *                          //  * @see User#addUserReward(List)
-         * @see RewardsService#getRewardPoints(Attraction, User)
+         * @param attractions             the catalog Snapshot used to find the VisitedLocations.
+         * @param visitedLocations        the VisitedLocations evaluated.
+         * @param newUserRewardsLocations the position of the VisitedLocation near each attraction id, -1 if none.
+         * @param user                    the user required UserReward update.
+         * @return a future completed with the UserRewards saved.
+         * @see User#addUserReward(int, UserReward)
+         * @see RewardsService#requestRewardPoints(Attraction, User)
          */
-        private List<UserReward> mapToSetUserRewards(Map<Attraction, VisitedLocation> newUserRewardsMap, User user) {
-            ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
-            List<UserReward> userRewardsToSave = new ArrayList<>();
-            
-            List<Future<UserReward>> futures = new ArrayList<>();
-            for(Map.Entry<Attraction, VisitedLocation> entry : newUserRewardsMap.entrySet()) {
-                Future<UserReward> future = executorService.submit(
-                        () -> new UserReward(entry.getValue(), entry.getKey(),
-                                rewardsService.getRewardPoints(entry.getKey(), user)));
-                futures.add(future);
-            }
-            
-            for(Future<UserReward> future : futures) {
-                try {
-                    
-                    userRewardsToSave.add(future.get());
-                } catch(InterruptedException | ExecutionException e) {
-                    throw new RuntimeException(e);
+        private CompletableFuture<List<UserReward>> mapToSetUserRewards(AttractionCatalog.Snapshot attractions,
+                                                                        LocationHistory.Snapshot visitedLocations,
+                                                                        int[] newUserRewardsLocations, User user) {
+            Map<Integer, CompletableFuture<Integer>> rewardPoints = new HashMap<>();
+            for(int attractionId = 0; attractionId < newUserRewardsLocations.length; attractionId++) {
+                if(newUserRewardsLocations[attractionId] >= 0) {
+                    rewardPoints.put(attractionId,
+                            rewardsService.requestRewardPoints(attractions.getById(attractionId), user));
                 }
             }
             
-            user.addUserReward(userRewardsToSave);
-            
-            executorService.shutdownNow();
-            return userRewardsToSave;
+            return CompletableFuture.allOf(rewardPoints.values()
+                            .toArray(new CompletableFuture[0]))
+                    .thenApply(ignored -> {
+                        List<UserReward> userRewardsToSave = new ArrayList<>();
+                        for(Map.Entry<Integer, CompletableFuture<Integer>> entry : rewardPoints.entrySet()) {
+                            int attractionId = entry.getKey();
+                            UserReward userReward = new UserReward(
+                                    visitedLocations.visitedLocation(newUserRewardsLocations[attractionId]),
+                                    attractions.getById(attractionId), entry.getValue()
+                                    .join());
+                            if(user.addUserReward(attractionId, userReward)) {
+                                userRewardsToSave.add(userReward);
+                            }
+                        }
+                        return userRewardsToSave;
+                    });
         }
     }
 }
@@ -4,48 +4,55 @@ import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.client.TripPricerClient;
+import com.openclassrooms.tourguide.client.TripPricingClient;
+import com.openclassrooms.tourguide.gateway.TripDealsGateway;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
+import org.springframework.beans.factory.annotation.Autowired;
 import tripPricer.Provider;
 import tripPricer.TripPricer;
 
 /**
  * Service class to perform user treatments.
  * <p>
- * Required the GpsUtil external dependency to get the Attraction list.
- * Required the RewardService to perform distance and rewards treatments.
- * Required the TripPricer external dependency to get the provider price.
+ * Required the AttractionCatalog to get the Attraction list and the nearest attractions of its AttractionIndex.
+ * Required the TripDealsGateway to get the provider price from the TripPricingClient external dependency.
  * </p>
  *
- * @see GpsUtil
- * @see RewardsService
- * @see TripPricer
+ * @see AttractionCatalog
+ * @see TripDealsGateway
  */
 @Service
 @Slf4j
 public class TourGuideService {
-    private final GpsUtil gpsUtil;
-    private final RewardsService rewardsService;
-    private final TripPricer tripPricer = new TripPricer();
+    private final AttractionCatalog attractionCatalog;
+    private final TripDealsGateway tripDealsGateway;
     
     /**
-     * *********************************
-     * Required to be updated for a production use.
-     * *********************************
+     * The number of attractions returned by getNearByAttractions.
      */
-    private static final String tripPricerApiKey = "test-server-api-key";
+    private static final int NEAR_ATTRACTIONS_NUMBER = 5;
     
     
-    public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
-        this.gpsUtil = gpsUtil;
-        this.rewardsService = rewardsService;
+    public TourGuideService(AttractionCatalog attractionCatalog) {
+        this(attractionCatalog, new TripPricerClient(new TripPricer()));
+    }
+    
+    public TourGuideService(AttractionCatalog attractionCatalog, TripPricingClient tripPricingClient) {
+        this(attractionCatalog, new TripDealsGateway(tripPricingClient));
+    }
+    
+    @Autowired
+    public TourGuideService(AttractionCatalog attractionCatalog, TripDealsGateway tripDealsGateway) {
+        this.attractionCatalog = attractionCatalog;
+        this.tripDealsGateway = tripDealsGateway;
     }
     
     
@@ -53,25 +60,22 @@ public class TourGuideService {
      * Return the list of providers for a user's TripDeal.
      * <p>
      * Get the sum of the User.userRewards.rewardPoints.
-     * Call getPrice method of tripPricer to create a list of Provider with params:
-     * apiKey : an arbitrary String.
-     * user : the in memory user.
-     * The UserPreference is numberOfAdults = 1, numberOfChildren = 0, tripDuration = 1.
+     * Request the tripDealsGateway for the providers matching the user's UserPreferences and reward points,
+     * the quote is cached until they change.
+     * The default UserPreference is numberOfAdults = 1, numberOfChildren = 0, tripDuration = 1.
      * </p>
      *
      * @param user the user parsed to create the trip deals list.
      * @return the list of provider who set to the user.
-     * @see TripPricer#getPrice(String, UUID, int, int, int, int)
+     * @see TripDealsGateway#getTripDeals(UUID, com.openclassrooms.tourguide.user.UserPreferences, int)
      */
     public List<Provider> getTripDeals(User user) {
         int cumulatativeRewardPoints = user.getUserRewards()
                 .stream()
                 .mapToInt(UserReward::getRewardPoints)
                 .sum();
-        List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(), user.getUserPreferences()
-                .getNumberOfAdults(), user.getUserPreferences()
-                .getNumberOfChildren(), user.getUserPreferences()
-                .getTripDuration(), cumulatativeRewardPoints);
+        List<Provider> providers = tripDealsGateway.getTripDeals(user.getUserId(), user.readUserPreferences(),
+                cumulatativeRewardPoints);
         user.setTripDeals(providers);
         return providers;
     }
@@ -80,26 +84,26 @@ public class TourGuideService {
     /**
      * Return a list of the five attractions closest to the visitedLocation parsed.
      * <p>
-     * Get the list of all attractions.
-     * Generate a stream of Map<Attraction, Double(distance between the visitedLocation and the Attraction).
-     * Sorted the Map by values.
-     * And return a list with the first fives entries.
+     * Query the index of the AttractionCatalog for the five nearest neighbours of the visitedLocation.
+     * The index answers without computing the distance to every attraction nor sorting them.
      * </p>
      *
      * @param visitedLocation the location parsed.
-     * @return a list of five Attraction .
-     * @see GpsUtil#getAttractions()
+     * @return a list of five Attraction, sorted from the closest to the farthest.
+     * @see AttractionIndex#nearest(gpsUtil.location.Location, int)
      */
     public List<Attraction> getNearByAttractions(VisitedLocation visitedLocation) {
-        return gpsUtil.getAttractions()
-                .stream()
-                .collect(Collectors.toMap(attraction -> attraction,
-                        distance -> rewardsService.getDistance(visitedLocation.location, distance)))
-                .entrySet()
-                .stream()
-                .sorted(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .limit(5)
-                .toList();
+        return attractionCatalog.getSnapshot()
+                .index()
+                .nearest(visitedLocation.location, NEAR_ATTRACTIONS_NUMBER);
     }
+    
+    /**
+     * @return the version stamp of the attractions returned by getNearByAttractions.
+     * @see AttractionCatalog#getVersion()
+     */
+    public long getAttractionsVersion() {
+        return attractionCatalog.getVersion();
+    }
+
 }
\ No newline at end of file
@@ -1,81 +1,195 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.metrics.CallTimer;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.repository.UserRepository;
 import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
+import com.openclassrooms.tourguide.user.LatestLocationIndex;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
-import gpsUtil.GpsUtil;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
  * Class to perform business treatments for Users.
  * <p>
- * Required the RewardService to perform distance and rewards treatments.
+ * Required the UserRepository to store the users.
+ * Required the GpsGateway to get the user location.
+ * Required the RewardPipeline to calculate the rewards of each new user location.
  * Required the Tracker to generate the location of users.
  * </p>
  * <p>
- * Use ExecutorService to perform multiThreads treatments.
- * Call the Tracker to calculate the users location.
+ * Call the Tracker to calculate the users location, partition by partition, with the TrackerSettings.
+ * A tracking interrupted, by the Tracker being stopped, ends with a CancellationException and keeps the interrupt
+ * flag of the thread.
+ * </p>
+ * <p>
+ * The sweeps over all users and the tracking of each user, from the GPS request to the record, are timed.
+ * </p>
+ * <p>
+ * The latest location of each user is also kept in the LatestLocationIndex, updated by each record.
  * </p>
  *
- * @see RewardsService
+ * @see UserRepository
+ * @see GpsGateway
+ * @see RewardPipeline
  * @see Tracker
  */
 @Service
 @Slf4j
 public class UserService {
     
-    private final RewardsService rewardsService;
+    private final UserRepository userRepository;
+    
+    private final GpsGateway gpsGateway;
+    
+    private final RewardPipeline rewardPipeline;
     
     public final Tracker tracker;
     
-    public final Map<String, User> internalUserMap = new HashMap<>();
+    /**
+     * The latest location of the users, to read all of them at once.
+     */
+    private final LatestLocationIndex latestLocations = new LatestLocationIndex();
+    
+    private final Timer sweepTimer = TourGuideMetrics.timer(TourGuideMetrics.TRACKING_SWEEP,
+            "The tracking of all users");
     
-    private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+    private final CallTimer userTimer = new CallTimer(TourGuideMetrics.TRACKING_USER,
+            "The tracking of a user, from the GPS request to the record");
 
-    public UserService(RewardsService rewardsService) {
-        this.rewardsService = rewardsService;
+    public UserService(UserRepository userRepository, GpsGateway gpsGateway, RewardPipeline rewardPipeline) {
+        this(userRepository, gpsGateway, rewardPipeline, TrackerSettings.DEFAULT);
+    }
+    
+    @Autowired
+    public UserService(UserRepository userRepository, GpsGateway gpsGateway, RewardPipeline rewardPipeline,
+                       TrackerSettings trackerSettings) {
+        if(trackerSettings.partitions() > userRepository.getShardCount()) {
+            // A partition is a set of shards, the extra partitions would be empty.
+            throw new IllegalArgumentException("The tracker partitions must not exceed the " +
+                    userRepository.getShardCount() + " shards of the user repository: " + trackerSettings.partitions());
+        }
+        this.userRepository = userRepository;
+        this.gpsGateway = gpsGateway;
+        this.rewardPipeline = rewardPipeline;
+        // The users restored by the repository.
+        userRepository.stream()
+                .forEach(this::indexLatestLocation);
         
-        tracker = new Tracker(this);
+        tracker = new Tracker(this, trackerSettings);
         
         addShutDownHook();
     }
     
+    /**
+     * To get the UserRewards of the User.
+     * <p>
+     * The UserRewards are calculated by the RewardPipeline when a new location is tracked, this method only reads them.
+     * </p>
+     *
+     * @param user the User parsed.
+     * @return the UserRewards already calculated.
+     * @see RewardPipeline
+     */
     public List<UserReward> getUserRewards(User user) {
-        rewardsService.calculateUserRewards(user);
         return user.getUserRewards();
     }
     
     public User getUserByUsername(String userName) {
-        return internalUserMap.get(userName);
+        return userRepository.findByUserName(userName);
+    }
+    
+    public User getUserById(UUID userId) {
+        return userRepository.findByUserId(userId);
     }
     
+    /**
+     * To create a user with the LocationHistorySettings of the UserRepository, without adding it.
+     *
+     * @return the new user.
+     * @see UserRepository#newUser(UUID, String, String, String)
+     */
+    public User newUser(UUID userId, String userName, String phoneNumber, String emailAddress) {
+        return userRepository.newUser(userId, userName, phoneNumber, emailAddress);
+    }
+    
+    /**
+     * To get a copy of all users.
+     * <p>
+     * The sweeps over all users should walk the UserRepository shards instead of copying them.
+     * </p>
+     *
+     * @return a new List of all users.
+     * @see UserRepository#stream()
+     */
     public List<User> getAllUsers() {
-        return new ArrayList<>(internalUserMap.values());
+        return userRepository.stream()
+                .toList();
     }
     
-    public void addUser(User user) {
-        if(!internalUserMap.containsKey(user.getUserName())) {
-            internalUserMap.put(user.getUserName(), user);
+    public int getUserCount() {
+        return userRepository.count();
+    }
+    
+    /**
+     * @return the number of VisitedLocations kept for all users.
+     */
+    public long getVisitedLocationCount() {
+        return userRepository.stream()
+                .mapToLong(user -> user.getLocationHistory()
+                        .size())
+                .sum();
+    }
+    
+    /**
+     * @param user the user to add.
+     * @return true if the user is added, false if its userName or its userId is already used.
+     * @see UserRepository#add(User)
+     */
+    public boolean addUser(User user) {
+        if(!userRepository.add(user)) {
+            return false;
         }
+        indexLatestLocation(user);
+        return true;
+    }
+    
+    /**
+     * @param users the users to add at once.
+     * @return the number of users added, the others having a userName or a userId already used.
+     * @see UserRepository#addAll(java.util.Collection)
+     */
+    public int addUsers(List<User> users) {
+        List<User> added = userRepository.addAll(users);
+        added.forEach(this::indexLatestLocation);
+        return added.size();
+    }
+    
+    /**
+     * @return the index of the latest location of the users.
+     */
+    public LatestLocationIndex getLatestLocations() {
+        return latestLocations;
     }
     
     /**
      * To get the actual User Location.
      * <p>
-     * If the User.visitedLocation is empty, return a random position.
+     * If the User has not been tracked, return a random position.
      * if not, call getLastVisitedLocation method
      * </p>
      *
@@ -84,68 +198,164 @@ public class UserService {
      * @see User#getLastVisitedLocation()
      */
     protected VisitedLocation getUserLocation(String userName) {
-        User user = getUserByUsername(userName);
+        return getUserLocation(getUserByUsername(userName));
+    }
+    
+    /**
+     * To get the actual location of the User parsed.
+     *
+     * @param user the User to locate.
+     * @return a VisitedLocation.
+     * @see #getUserLocation(String)
+     */
+    protected VisitedLocation getUserLocation(User user) {
+        VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
         
-        return user.getVisitedLocations()
-                .isEmpty() ? trackUserLocation(user) : user.getLastVisitedLocation();
+        return lastVisitedLocation == null ? trackUserLocation(user) : lastVisitedLocation;
     }
     
     /**
-     * Method to call the TrackUserCallable in a new Thread.
-     * <p>
-     * Use the VirtualThreadPerTaskExecutor of the executorService to call TrackUserCallable(user).
-     * </p>
+     * Method to get the current location of the User from the GpsGateway and save it.
      *
      * @param user User parsed to calculate the current Location.
      * @return the visitedLocation.
-     * @see TrackUserCallable
+     * @throws CancellationException if interrupted while waiting for the GpsGateway.
+     * @see #recordUserLocation(User, VisitedLocation)
      */
     public VisitedLocation trackUserLocation(User user) {
-        
-        Callable<VisitedLocation> callable = new TrackUserCallable(user);
-        Future<VisitedLocation> future = executorService.submit(callable);
-        
+        long start = System.nanoTime();
         try {
-            VisitedLocation visitedLocation = future.get();
-            executorService.shutdown();
-            return visitedLocation;
-        } catch(InterruptedException | ExecutionException e) {
-            throw new RuntimeException(e);
+            return gpsGateway.getUserLocation(user.getUserId())
+                    .thenApply(visitedLocation -> recordUserLocation(user, visitedLocation))
+                    .whenComplete((visitedLocation, throwable) -> userTimer.record(System.nanoTime() - start,
+                            throwable != null))
+                    .join();
+        } catch(InterruptedException e) {
+            throw cancelled(e);
         }
     }
     
     /**
      * Method to Track all User location.
+     *
+     * @see #trackUsers(Stream)
+     */
+    public void trackAllUser() {
+        int tracked = sweepTimer.record(() -> trackUsers(userRepository.stream()));
+        log.debug("********** TrackAllUser calculate: " + tracked + " VisitedLocation. **********");
+    }
+    
+    /**
+     * Method to Track the location of the users of a partition, called by the Tracker.
+     *
+     * @param partition      the partition to track, from 0.
+     * @param partitionCount the number of partitions.
+     * @return the number of users tracked.
+     * @throws CancellationException if interrupted while waiting for the GpsGateway.
+     * @see UserRepository#partition(int, int)
+     * @see #trackUsers(Stream)
+     */
+    public int trackPartition(int partition, int partitionCount) {
+        return trackUsers(userRepository.partition(partition, partitionCount));
+    }
+    
+    /**
+     * Method to Track the location of the users parsed.
      * <p>
-     * Create a List<Future<VisitedLocation> to prepare Threads.
-     * Use the VirtualThreadPerTaskExecutor of the executorService to call TrackUserCallable(user) for each Users.
+     * Request the location of each user to the GpsGateway, which waits while its concurrency limit is reached:
+     * the users are submitted at the pace of the GPS and only the running calls are in memory.
+     * Then wait for the last location.
      * </p>
      *
-     * @see #trackUserLocation(User)
+     * @param users the users to track.
+     * @return the number of users tracked.
+     * @see GpsGateway#getUserLocation(UUID)
      */
-    public void trackAllUser() {
-        List<User> users = getAllUsers();
-        
-        List<Future<VisitedLocation>> futures = new ArrayList<>();
-        
-        for(User user : users) {
-            Future<VisitedLocation> future = executorService.submit(new TrackUserCallable(user));
-            futures.add(future);
-        }
-        
-        List<VisitedLocation> visitedLocations = new ArrayList<>();
+    private int trackUsers(Stream<User> users) {
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicInteger tracked = new AtomicInteger();
+        CompletableFuture<Void> done = new CompletableFuture<>();
         
-        for(Future<VisitedLocation> future : futures) {
+        users.forEach(user -> {
+            long start = System.nanoTime();
+            CompletableFuture<VisitedLocation> future;
             try {
-                visitedLocations.add(future.get());
-                executorService.shutdown();
-            } catch(InterruptedException | ExecutionException e) {
-                throw new RuntimeException(e);
+                future = gpsGateway.getUserLocation(user.getUserId());
+            } catch(InterruptedException e) {
+                throw cancelled(e);
             }
+            pending.incrementAndGet();
+            future.thenAccept(visitedLocation -> {
+                        recordUserLocation(user, visitedLocation);
+                        tracked.incrementAndGet();
+                    })
+                    .whenComplete((result, throwable) -> {
+                        userTimer.record(System.nanoTime() - start, throwable != null);
+                        if(throwable != null && !isCancellation(throwable)) {
+                            log.error("Tracking failed for " + user.getUserId(), throwable);
+                        }
+                        if(pending.decrementAndGet() == 0) {
+                            done.complete(null);
+                        }
+                    });
+        });
+        
+        if(pending.decrementAndGet() == 0) {
+            done.complete(null);
+        }
+        done.join();
+        return tracked.get();
+    }
+    
+    /**
+     * Method to save a new location of the User.
+     * <p>
+     * Call the addToVisitedLocations method of User to add this location into the user's VisitedLocation.
+     * Update the latest location of the user in the LatestLocationIndex.
+     * Publish the location to the RewardPipeline, blocking while the pipeline is full.
+     * </p>
+     *
+     * @param user            the user located.
+     * @param visitedLocation the new location.
+     * @return the VisitedLocation parsed.
+     * @see User#addToVisitedLocations(VisitedLocation)
+     * @see RewardPipeline#publish(User, VisitedLocation)
+     */
+    private VisitedLocation recordUserLocation(User user, VisitedLocation visitedLocation) {
+        user.addToVisitedLocations(visitedLocation);
+        latestLocations.update(user, visitedLocation);
+        try {
+            rewardPipeline.publish(user, visitedLocation);
+        } catch(InterruptedException e) {
+            throw cancelled(e);
         }
-        log.debug("********** TrackAllUser calculate: " + visitedLocations.size() + " VisitedLocation. **********");
+        log.debug("VisitedLocations size after update: " + user.getLocationHistory()
+                .size());
+        return visitedLocation;
     }
     
+    /**
+     * Restore the interrupt flag and return the CancellationException ending the interrupted tracking.
+     */
+    private static CancellationException cancelled(InterruptedException e) {
+        Thread.currentThread()
+                .interrupt();
+        CancellationException cancellation = new CancellationException("Tracking interrupted");
+        cancellation.initCause(e);
+        return cancellation;
+    }
+    
+    private static boolean isCancellation(Throwable throwable) {
+        return throwable instanceof CancellationException ||
+                throwable instanceof CompletionException && throwable.getCause() instanceof CancellationException;
+    }
+    
+    private void indexLatestLocation(User user) {
+        VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+        if(lastVisitedLocation != null) {
+            latestLocations.update(user, lastVisitedLocation);
+        }
+    }
     
     private void addShutDownHook() {
         Runtime.getRuntime()
@@ -155,49 +365,4 @@ public class UserService {
                     }
                 });
     }
-    
-    /**
-     * The Callable class to create Threads in the UserService class to get the User location.
-     * <p>
-     * Required the GpsUtil external dependency to get the Attraction list.
-     * </p>
-     *
-     * @see UserService#trackUserLocation(User)
-     */
-    private static class TrackUserCallable implements Callable<VisitedLocation>{
-        private final User user;
-        private final GpsUtil gpsUtil = new GpsUtil();
-        
-        private TrackUserCallable(User user) {
-            this.user = user;
-        }
-        
-        /**
-         * The override call method of Callable implementation.
-         * <p>
-         * Call getUserLocation method of the GpsUtil lib to generate a random location.
-         * Call the addToVisitedLocations method of User to add this location into the user's VisitedLocation.
-         * </p>
-         *
-         * @return the VisitedLocation generated.
-         * @see GpsUtil#getUserLocation(UUID)
-         * @see User#addToVisitedLocations(VisitedLocation)
-         */
-        @Override
-        public VisitedLocation call() {
-            log.debug("TrackUserRunnable n° " + Thread.currentThread()
-                    .getName() + " started.");
-            log.debug("Calculates " + user.getUserId() + "'s location.");
-            log.debug("VisitedLocations size before update: " + user.getVisitedLocations()
-                    .size());
-            VisitedLocation userLocation = gpsUtil.getUserLocation(user.getUserId());
-            user.addToVisitedLocations(userLocation);
-            
-            log.debug("VisitedLocations size after update: " + user.getVisitedLocations()
-                    .size());
-            log.debug("TrackUserRunnable ended.");
-            
-            return userLocation;
-        }
-    }
 }
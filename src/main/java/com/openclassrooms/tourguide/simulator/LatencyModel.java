@@ -0,0 +1,99 @@
+package com.openclassrooms.tourguide.simulator;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+/**
+ * The distribution of the simulated call latencies.
+ * <p>
+ * A model is parsed from a String:
+ * fixed:50ms, uniform:10ms-200ms, lognormal:100ms:0.5 (median and sigma),
+ * optionally followed by tail spikes: +spike:0.001:2s (probability and extra latency).
+ * </p>
+ */
+@FunctionalInterface
+public interface LatencyModel {
+    
+    LatencyModel NONE = random -> 0;
+    
+    /**
+     * @param random the random source of the call.
+     * @return the latency of the call, in nanoseconds.
+     */
+    long sampleNanos(SplittableRandom random);
+    
+    static LatencyModel fixed(Duration latency) {
+        long nanos = latency.toNanos();
+        return random -> nanos;
+    }
+    
+    static LatencyModel uniform(Duration min, Duration max) {
+        long minNanos = min.toNanos();
+        long maxNanos = max.toNanos();
+        if(maxNanos <= minNanos) {
+            return fixed(min);
+        }
+        return random -> random.nextLong(minNanos, maxNanos + 1);
+    }
+    
+    /**
+     * @param median the median latency.
+     * @param sigma  the standard deviation of the latency logarithm, the higher the longer the tail.
+     */
+    static LatencyModel logNormal(Duration median, double sigma) {
+        double mu = Math.log(median.toNanos());
+        return random -> (long) Math.exp(mu + sigma * gaussian(random));
+    }
+    
+    /**
+     * @param probability the probability of a spike per call.
+     * @param spike       the latency added by a spike.
+     * @return this model with spikes added to some calls.
+     */
+    default LatencyModel withSpikes(double probability, Duration spike) {
+        long spikeNanos = spike.toNanos();
+        return random -> {
+            long latency = sampleNanos(random);
+            return random.nextDouble() < probability ? latency + spikeNanos : latency;
+        };
+    }
+    
+    static LatencyModel parse(String specification) {
+        String[] parts = specification.trim()
+                .split("\\+");
+        LatencyModel model = parseBase(parts[0]);
+        for(int i = 1; i < parts.length; i++) {
+            String[] spike = parts[i].split(":");
+            if(spike.length != 3 || !spike[0].equals("spike")) {
+                throw new IllegalArgumentException("Invalid latency spike: " + parts[i]);
+            }
+            model = model.withSpikes(Double.parseDouble(spike[1]), DurationStyle.detectAndParse(spike[2]));
+        }
+        return model;
+    }
+    
+    private static LatencyModel parseBase(String specification) {
+        String[] fields = specification.split(":");
+        switch(fields[0]) {
+            case "none":
+                return NONE;
+            case "fixed":
+                return fixed(DurationStyle.detectAndParse(fields[1]));
+            case "uniform":
+                String[] bounds = fields[1].split("-");
+                return uniform(DurationStyle.detectAndParse(bounds[0]), DurationStyle.detectAndParse(bounds[1]));
+            case "lognormal":
+                return logNormal(DurationStyle.detectAndParse(fields[1]), Double.parseDouble(fields[2]));
+            default:
+                throw new IllegalArgumentException("Invalid latency model: " + specification);
+        }
+    }
+    
+    private static double gaussian(SplittableRandom random) {
+        double u1 = 1 - random.nextDouble();
+        double u2 = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+    }
+}
@@ -0,0 +1,11 @@
+package com.openclassrooms.tourguide.simulator;
+
+/**
+ * Exception thrown by a simulator to simulate a failed call of an external dependency.
+ */
+public class SimulatedFailureException extends RuntimeException {
+    
+    public SimulatedFailureException(String message) {
+        super(message);
+    }
+}
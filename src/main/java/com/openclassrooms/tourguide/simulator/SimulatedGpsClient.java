@@ -0,0 +1,66 @@
+package com.openclassrooms.tourguide.simulator;
+
+import com.openclassrooms.tourguide.client.GpsClient;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seeded stand-in of gpsUtil.
+ * <p>
+ * The attractions are generated once from the seed, their ids are stable until the restart.
+ * The n-th location of a user depends only on the seed, the user id and n.
+ * </p>
+ */
+public class SimulatedGpsClient extends Simulator implements GpsClient {
+    
+    public static final int DEFAULT_ATTRACTION_COUNT = 26;
+    private static final double MAX_LATITUDE = 85.05112878;
+    
+    private final List<Attraction> attractions;
+    private final ConcurrentMap<UUID, AtomicLong> locationCounts = new ConcurrentHashMap<>();
+    
+    public SimulatedGpsClient(long seed, LatencyModel latencyModel, double failureRate, int attractionCount) {
+        super(seed, latencyModel, failureRate);
+        List<Attraction> generated = new ArrayList<>(attractionCount);
+        SplittableRandom random = random(-1);
+        for(int i = 0; i < attractionCount; i++) {
+            generated.add(new Attraction("Attraction " + i, "City " + i, "State " + i % 50, randomLatitude(random),
+                    randomLongitude(random)));
+        }
+        this.attractions = List.copyOf(generated);
+    }
+    
+    @Override
+    public List<Attraction> getAttractions() {
+        simulateCall(random(-2, System.nanoTime()), "getAttractions");
+        return new ArrayList<>(attractions);
+    }
+    
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        long count = locationCounts.computeIfAbsent(userId, id -> new AtomicLong())
+                .getAndIncrement();
+        SplittableRandom random = random(userId.getMostSignificantBits(), userId.getLeastSignificantBits(), count);
+        Location location = new Location(randomLatitude(random), randomLongitude(random));
+        simulateCall(random, "getUserLocation");
+        return new VisitedLocation(userId, location, new Date());
+    }
+    
+    private static double randomLatitude(SplittableRandom random) {
+        return random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE);
+    }
+    
+    private static double randomLongitude(SplittableRandom random) {
+        return random.nextDouble(-180, 180);
+    }
+}
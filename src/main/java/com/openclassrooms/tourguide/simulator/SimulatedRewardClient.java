@@ -0,0 +1,28 @@
+package com.openclassrooms.tourguide.simulator;
+
+import com.openclassrooms.tourguide.client.RewardClient;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Seeded stand-in of RewardCentral: the points of an attraction for a user depend only on the seed and the ids.
+ */
+public class SimulatedRewardClient extends Simulator implements RewardClient {
+    
+    private static final int MIN_POINTS = 1;
+    private static final int MAX_POINTS = 1000;
+    
+    public SimulatedRewardClient(long seed, LatencyModel latencyModel, double failureRate) {
+        super(seed, latencyModel, failureRate);
+    }
+    
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        SplittableRandom random = random(attractionId.getMostSignificantBits(), attractionId.getLeastSignificantBits(),
+                userId.getMostSignificantBits(), userId.getLeastSignificantBits());
+        int points = random.nextInt(MIN_POINTS, MAX_POINTS);
+        simulateCall(random, "getAttractionRewardPoints");
+        return points;
+    }
+}
@@ -0,0 +1,44 @@
+package com.openclassrooms.tourguide.simulator;
+
+import com.openclassrooms.tourguide.client.TripPricingClient;
+import tripPricer.Provider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Seeded stand-in of TripPricer: the offers of a trip depend only on the seed and the trip parameters.
+ * <p>
+ * Like TripPricer, five distinct providers are returned, the reward points are deducted from the price.
+ * </p>
+ */
+public class SimulatedTripPricingClient extends Simulator implements TripPricingClient {
+    
+    private static final int PROVIDERS_NUMBER = 5;
+    private static final List<String> PROVIDER_NAMES = List.of("Holiday Travels", "Enterprize Ventures Limited",
+            "Sunny Days", "FlyAway Trips", "United Partners Vacations", "Dream Trips", "Live Free",
+            "Dancing Waves Cruselines and Partners", "AdventureCo", "Cure-Your-Blues");
+    
+    public SimulatedTripPricingClient(long seed, LatencyModel latencyModel, double failureRate) {
+        super(seed, latencyModel, failureRate);
+    }
+    
+    @Override
+    public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                                   int rewardsPoints) {
+        SplittableRandom random = random(attractionId.getMostSignificantBits(), attractionId.getLeastSignificantBits(),
+                adults, children, nightsStay, rewardsPoints);
+        List<String> names = new ArrayList<>(PROVIDER_NAMES);
+        List<Provider> providers = new ArrayList<>(PROVIDERS_NUMBER);
+        for(int i = 0; i < PROVIDERS_NUMBER; i++) {
+            String name = names.remove(random.nextInt(names.size()));
+            double nightPrice = random.nextInt(100, 700) * (adults + children / 2.0);
+            double price = Math.max(0, nightPrice * nightsStay - rewardsPoints) + 0.99;
+            providers.add(new Provider(new UUID(random.nextLong(), random.nextLong()), name, price));
+        }
+        simulateCall(random, "getPrice");
+        return providers;
+    }
+}
@@ -0,0 +1,71 @@
+package com.openclassrooms.tourguide.simulator;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+/**
+ * Base class of the simulators: a seed, a LatencyModel and a failure rate.
+ * <p>
+ * The random source of a call is derived from the seed and the call keys, not shared between calls:
+ * the same call returns the same data, latency and failure whatever the thread and the calls before it.
+ * </p>
+ */
+public abstract class Simulator {
+    
+    private final long seed;
+    private final LatencyModel latencyModel;
+    private final double failureRate;
+    
+    protected Simulator(long seed, LatencyModel latencyModel, double failureRate) {
+        if(failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("The failure rate must be between 0 and 1: " + failureRate);
+        }
+        this.seed = seed;
+        this.latencyModel = latencyModel;
+        this.failureRate = failureRate;
+    }
+    
+    /**
+     * @param keys the values identifying the call.
+     * @return the random source of the call.
+     */
+    protected SplittableRandom random(long... keys) {
+        long hash = seed;
+        for(long key : keys) {
+            hash = mix(hash + key);
+        }
+        return new SplittableRandom(hash);
+    }
+    
+    /**
+     * Wait for the simulated latency, then throw a SimulatedFailureException if the call fails.
+     *
+     * @param random    the random source of the call.
+     * @param operation the name of the operation, for the failure message.
+     */
+    protected void simulateCall(SplittableRandom random, String operation) {
+        long latency = latencyModel.sampleNanos(random);
+        boolean failed = random.nextDouble() < failureRate;
+        if(latency > 0) {
+            try {
+                Thread.sleep(Duration.ofNanos(latency));
+            } catch(InterruptedException e) {
+                Thread.currentThread()
+                        .interrupt();
+                throw new SimulatedFailureException(operation + " interrupted");
+            }
+        }
+        if(failed) {
+            throw new SimulatedFailureException(operation + " failed");
+        }
+    }
+    
+    /**
+     * The SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package of simulators. Contains seeded stand-ins of the external dependencies, with tunable latency and failures.
+ */
+package com.openclassrooms.tourguide.simulator;
@@ -1,62 +1,173 @@
 package com.openclassrooms.tourguide.tracker;
 
-import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
 import com.openclassrooms.tourguide.service.UserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.time.StopWatch;
-import com.openclassrooms.tourguide.user.User;
 
 /**
- * Class to manage the tracker thread.
+ * Class to schedule the tracking of the users.
+ * <p>
+ * The users are split in partitions, each partition is tracked once per interval at a fixed rate.
+ * The partitions start one after the other, spread across the interval, to flatten the load on the GPS.
+ * </p>
+ * <p>
+ * A partition cycle never overlaps the previous cycle of the same partition: if the previous cycle is still running,
+ * the new one is skipped.
+ * The lag between the scheduled start and the actual start of each cycle is logged, exposed and timed,
+ * like the cycle duration.
+ * </p>
+ *
+ * @see TrackerSettings
+ * @see UserService#trackPartition(int, int)
  */
 @Slf4j
-public class Tracker extends Thread {
-    private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+public class Tracker {
+    
     private final UserService userService;
-    private boolean stop = false;
+    private final TrackerSettings settings;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tracker-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService cycleExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicBoolean[] running;
+    private final long startNanos = System.nanoTime();
+    
+    private final LongAdder cycleCount = new LongAdder();
+    private final LongAdder skippedCycleCount = new LongAdder();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong lastCycleMillis = new AtomicLong();
+    private final Timer cycleTimer = TourGuideMetrics.timer(TourGuideMetrics.TRACKER_CYCLE,
+            "The tracking of a partition");
+    private final Timer lagTimer = TourGuideMetrics.timer(TourGuideMetrics.TRACKER_LAG,
+            "The delay between the scheduled start and the actual start of a partition cycle");
+    private final Counter skippedCounter = TourGuideMetrics.counter(TourGuideMetrics.TRACKER_SKIPPED,
+            "The partition cycles skipped because the previous cycle was still running");
     
     public Tracker(UserService userService) {
+        this(userService, TrackerSettings.DEFAULT);
+    }
+    
+    public Tracker(UserService userService, TrackerSettings settings) {
         this.userService = userService;
+        this.settings = settings;
+        this.running = new AtomicBoolean[settings.partitions()];
         
-        executorService.submit(this);
+        long intervalNanos = settings.interval()
+                .toNanos();
+        long periodNanos = settings.partitionPeriod()
+                .toNanos();
+        for(int partition = 0; partition < settings.partitions(); partition++) {
+            int currentPartition = partition;
+            running[partition] = new AtomicBoolean();
+            scheduler.scheduleAtFixedRate(() -> startCycle(currentPartition), partition * periodNanos, intervalNanos,
+                    TimeUnit.NANOSECONDS);
+        }
     }
     
     /**
-     * Assures to shut down the Tracker thread
+     * Assures to shut down the Tracker threads
      */
     public void stopTracking() {
-        stop = true;
-        executorService.shutdownNow();
-    }
-    
-    @Override
-    public void run() {
-        StopWatch stopWatch = new StopWatch();
-        while(true) {
-            if(Thread.currentThread()
-                    .isInterrupted() || stop) {
-                log.debug("Tracker stopping");
-                break;
-            }
-            
-            List<User> users = userService.getAllUsers();
-            log.debug("Begin Tracker. Tracking " + users.size() + " users.");
-            stopWatch.start();
-            userService.trackAllUser();
-            stopWatch.stop();
-            log.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-            stopWatch.reset();
-            try {
-                log.debug("Tracker sleeping");
-                TimeUnit.SECONDS.sleep(trackingPollingInterval);
-            } catch(InterruptedException e) {
-                break;
-            }
+        log.debug("Tracker stopping");
+        scheduler.shutdownNow();
+        cycleExecutor.shutdownNow();
+    }
+    
+    /**
+     * @return the number of partition cycles done.
+     */
+    public long getCycleCount() {
+        return cycleCount.sum();
+    }
+    
+    /**
+     * @return the number of partition cycles skipped because the previous cycle was still running.
+     */
+    public long getSkippedCycleCount() {
+        return skippedCycleCount.sum();
+    }
+    
+    /**
+     * @return the delay between the scheduled start and the actual start of the last cycle, in milliseconds.
+     */
+    public long getLastLagMillis() {
+        return lastLagMillis.get();
+    }
+    
+    /**
+     * @return the duration of the last cycle, in milliseconds.
+     */
+    public long getLastCycleMillis() {
+        return lastCycleMillis.get();
+    }
+    
+    /**
+     * Method called by the scheduler, start the partition cycle in a virtual thread unless the previous one is running.
+     *
+     * @param partition the partition to track.
+     */
+    private void startCycle(int partition) {
+        long scheduledNanos = scheduledStart(partition, System.nanoTime());
+        if(!running[partition].compareAndSet(false, true)) {
+            skippedCycleCount.increment();
+            skippedCounter.increment();
+            log.warn("Tracker partition " + partition + " skipped, the previous cycle is still running.");
+            return;
         }
+        try {
+            cycleExecutor.execute(() -> runCycle(partition, scheduledNanos));
+        } catch(RuntimeException e) {
+            running[partition].set(false);
+            log.debug("Tracker partition " + partition + " not started: " + e.getMessage());
+        }
+    }
+    
+    private void runCycle(int partition, long scheduledNanos) {
+        long start = System.nanoTime();
+        long lagMillis = TimeUnit.NANOSECONDS.toMillis(start - scheduledNanos);
+        lastLagMillis.set(lagMillis);
+        lagTimer.record(start - scheduledNanos, TimeUnit.NANOSECONDS);
+        try {
+            int tracked = userService.trackPartition(partition, settings.partitions());
+            long cycleNanos = System.nanoTime() - start;
+            cycleTimer.record(cycleNanos, TimeUnit.NANOSECONDS);
+            long cycleMillis = TimeUnit.NANOSECONDS.toMillis(cycleNanos);
+            lastCycleMillis.set(cycleMillis);
+            cycleCount.increment();
+            log.debug("Tracker partition " + partition + ": " + tracked + " users tracked in " + cycleMillis +
+                    " ms, lag " + lagMillis + " ms.");
+        } catch(CancellationException e) {
+            // Interrupted by stopTracking.
+            log.debug("Tracker partition " + partition + " cancelled.");
+        } catch(RuntimeException e) {
+            log.error("Tracker partition " + partition + " failed.", e);
+        } finally {
+            running[partition].set(false);
+        }
+    }
+    
+    /**
+     * @return the scheduled start of the last cycle of the partition before the time parsed.
+     */
+    private long scheduledStart(int partition, long nowNanos) {
+        long intervalNanos = settings.interval()
+                .toNanos();
+        long firstNanos = startNanos + partition * settings.partitionPeriod()
+                .toNanos();
+        long elapsed = Math.max(0, nowNanos - firstNanos);
+        return firstNanos + (elapsed / intervalNanos) * intervalNanos;
     }
 }
@@ -0,0 +1,35 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.time.Duration;
+
+/**
+ * The settings of the Tracker.
+ *
+ * @param interval   the time between two trackings of the same user.
+ * @param partitions the number of user partitions, tracked one after the other across the interval, at most the
+ *                   number of shards of the UserRepository.
+ */
+public record TrackerSettings(Duration interval, int partitions) {
+    
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(5);
+    public static final int DEFAULT_PARTITIONS = 10;
+    
+    public static final TrackerSettings DEFAULT =
+            new TrackerSettings(DEFAULT_INTERVAL, DEFAULT_PARTITIONS);
+    
+    public TrackerSettings {
+        if(interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("The tracking interval must be positive: " + interval);
+        }
+        if(partitions < 1) {
+            throw new IllegalArgumentException("The partitions must be positive: " + partitions);
+        }
+    }
+    
+    /**
+     * @return the time between the start of two consecutive partitions.
+     */
+    public Duration partitionPeriod() {
+        return interval.dividedBy(partitions);
+    }
+}
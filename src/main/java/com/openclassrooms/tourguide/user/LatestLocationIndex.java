@@ -0,0 +1,198 @@
+package com.openclassrooms.tourguide.user;
+
+import gpsUtil.location.VisitedLocation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The latest location of each user, kept in primitive arrays to read all of them without walking the users.
+ * <p>
+ * A user gets a slot on its first update, the slot number is kept by userId in the index, so a user can be indexed by
+ * several indexes. The slots are grouped in segments of SEGMENT_SIZE users, added as the users arrive: a segment is
+ * never copied, the slots never move.
+ * </p>
+ * <p>
+ * The updates of a segment are serialized, the reads are lock-free: each slot has a version, odd while the slot is
+ * written. A reader copies the slot, then checks its version did not change, and retries otherwise.
+ * </p>
+ */
+public final class LatestLocationIndex {
+    
+    private static final int SEGMENT_SHIFT = 12;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final VarHandle VERSIONS = MethodHandles.arrayElementVarHandle(long[].class);
+    
+    /**
+     * The segments, replaced by a longer array when a segment is added.
+     */
+    private volatile Segment[] segments = new Segment[0];
+    /**
+     * The slot of each user indexed, put after the slot user id.
+     */
+    private final ConcurrentMap<UUID, Integer> slots = new ConcurrentHashMap<>();
+    /**
+     * The number of slots given to the users, written after the slot user id.
+     */
+    private volatile int size;
+    
+    /**
+     * Method to save the location of the user, if it is not older than the location already saved.
+     *
+     * @param user            the user located.
+     * @param visitedLocation the new location of the user.
+     */
+    public void update(User user, VisitedLocation visitedLocation) {
+        int slot = slotOf(user.getUserId());
+        Segment segment = segments[slot >>> SEGMENT_SHIFT];
+        int i = slot & SEGMENT_MASK;
+        long time = visitedLocation.timeVisited.getTime();
+        synchronized(segment) {
+            long version = segment.versions[i];
+            if(version != 0 && segment.times[i] > time) {
+                return;
+            }
+            VERSIONS.setOpaque(segment.versions, i, version + 1);
+            VarHandle.storeStoreFence();
+            segment.latitudes[i] = visitedLocation.location.latitude;
+            segment.longitudes[i] = visitedLocation.location.longitude;
+            segment.times[i] = time;
+            VERSIONS.setRelease(segment.versions, i, version + 2);
+        }
+    }
+    
+    /**
+     * @return the number of users with a slot.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return a Cursor over the latest location of the users updated before the call.
+     */
+    public Cursor cursor() {
+        int end = size;
+        return new Cursor(segments, end);
+    }
+    
+    private int slotOf(UUID userId) {
+        Integer existing = slots.get(userId);
+        if(existing != null) {
+            return existing;
+        }
+        synchronized(this) {
+            existing = slots.get(userId);
+            if(existing != null) {
+                return existing;
+            }
+            int slot = size;
+            Segment[] current = segments;
+            if(slot >>> SEGMENT_SHIFT == current.length) {
+                current = Arrays.copyOf(current, current.length + 1);
+                current[current.length - 1] = new Segment();
+                segments = current;
+            }
+            Segment segment = current[slot >>> SEGMENT_SHIFT];
+            segment.mostSigBits[slot & SEGMENT_MASK] = userId.getMostSignificantBits();
+            segment.leastSigBits[slot & SEGMENT_MASK] = userId.getLeastSignificantBits();
+            slots.put(userId, slot);
+            size = slot + 1;
+            return slot;
+        }
+    }
+    
+    /**
+     * Cursor over the slots, skipping the users not located yet.
+     * <p>
+     * The accessors read the copy of the current slot, without allocating.
+     * </p>
+     */
+    public static final class Cursor {
+        
+        private final Segment[] segments;
+        private final int end;
+        private int slot = -1;
+        private long mostSigBits;
+        private long leastSigBits;
+        private double latitude;
+        private double longitude;
+        private long time;
+        
+        private Cursor(Segment[] segments, int end) {
+            this.segments = segments;
+            this.end = end;
+        }
+        
+        /**
+         * Move to the next user located.
+         *
+         * @return false after the last one.
+         */
+        public boolean next() {
+            while(++slot < end) {
+                Segment segment = segments[slot >>> SEGMENT_SHIFT];
+                int i = slot & SEGMENT_MASK;
+                while(true) {
+                    long version = (long) VERSIONS.getAcquire(segment.versions, i);
+                    if(version == 0) {
+                        break;
+                    }
+                    if((version & 1) != 0) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    latitude = segment.latitudes[i];
+                    longitude = segment.longitudes[i];
+                    time = segment.times[i];
+                    VarHandle.loadLoadFence();
+                    if((long) VERSIONS.getOpaque(segment.versions, i) == version) {
+                        mostSigBits = segment.mostSigBits[i];
+                        leastSigBits = segment.leastSigBits[i];
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        
+        public long userIdMostSigBits() {
+            return mostSigBits;
+        }
+        
+        public long userIdLeastSigBits() {
+            return leastSigBits;
+        }
+        
+        public UUID userId() {
+            return new UUID(mostSigBits, leastSigBits);
+        }
+        
+        public double latitude() {
+            return latitude;
+        }
+        
+        public double longitude() {
+            return longitude;
+        }
+        
+        public long timeVisited() {
+            return time;
+        }
+    }
+    
+    private static final class Segment {
+        
+        private final long[] versions = new long[SEGMENT_SIZE];
+        private final long[] mostSigBits = new long[SEGMENT_SIZE];
+        private final long[] leastSigBits = new long[SEGMENT_SIZE];
+        private final double[] latitudes = new double[SEGMENT_SIZE];
+        private final double[] longitudes = new double[SEGMENT_SIZE];
+        private final long[] times = new long[SEGMENT_SIZE];
+    }
+}
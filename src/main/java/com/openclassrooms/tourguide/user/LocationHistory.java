@@ -0,0 +1,402 @@
+package com.openclassrooms.tourguide.user;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The VisitedLocation history of a user, stored in a ring buffer of two tiers.
+ * <p>
+ * Each VisitedLocation appended gets a sequence number, starting at 0 and never reused.
+ * Only the last retention VisitedLocations are kept, the older ones are overwritten.
+ * The buffer is allocated on the first append and grows by doubling up to the hotCapacity,
+ * a user with a short history keeps a small buffer.
+ * </p>
+ * <p>
+ * The last hotCapacity VisitedLocations are kept on-heap, in primitive arrays. The older ones are moved off-heap,
+ * into a cold tier of COLD_RECORD_SIZE bytes per VisitedLocation, so a long history does not load the GC.
+ * The cold tier is sized once for the retention, when the on-heap tier is full, and carved out of a direct slab
+ * shared by the histories: a user costs no direct ByteBuffer, no Cleaner, and the cold tier is never reallocated.
+ * The Snapshots read both tiers.
+ * </p>
+ * <p>
+ * The appends are serialized, the reads are lock-free: a reader copies the slots, then checks the sequence being
+ * written and drops the slots overwritten during the copy.
+ * </p>
+ */
+public final class LocationHistory {
+    
+    public static final int DEFAULT_RETENTION = 1000;
+    public static final int DEFAULT_HOT_CAPACITY = 64;
+    private static final int INITIAL_CAPACITY = 4;
+    
+    /**
+     * The buffer of the empty histories, shared until their first append.
+     */
+    private static final Buffer EMPTY = new Buffer(0, 0);
+    
+    /**
+     * The bytes of an off-heap VisitedLocation: latitude, longitude and time.
+     */
+    public static final int COLD_RECORD_SIZE = 3 * Long.BYTES;
+    
+    /**
+     * The bytes of a direct slab, a larger cold tier gets a direct ByteBuffer of its own.
+     */
+    static final int COLD_SLAB_SIZE = 4 << 20;
+    
+    private static final ColdSlabs COLD_SLABS = new ColdSlabs();
+    
+    private final UUID userId;
+    private final int retention;
+    private final int hotCapacity;
+    
+    /**
+     * The tiers, replaced by bigger ones until the retention is reached.
+     */
+    private volatile Buffer buffer;
+    /**
+     * The sequence number of the next VisitedLocation, written after its slot.
+     */
+    private volatile long sequence;
+    /**
+     * The sequence number following the VisitedLocation being written, written before its slot.
+     */
+    private volatile long writingSequence;
+    /**
+     * The sequence number of the first VisitedLocation kept after a clear.
+     */
+    private volatile long firstSequence;
+    
+    public LocationHistory(UUID userId) {
+        this(userId, LocationHistorySettings.DEFAULT);
+    }
+    
+    public LocationHistory(UUID userId, int retention) {
+        this(userId, retention, DEFAULT_HOT_CAPACITY);
+    }
+    
+    public LocationHistory(UUID userId, LocationHistorySettings settings) {
+        this(userId, settings.retention(), settings.hotCapacity());
+    }
+    
+    /**
+     * @param userId      the user who visits the locations.
+     * @param retention   the number of VisitedLocations kept.
+     * @param hotCapacity the number of last VisitedLocations kept on-heap.
+     */
+    public LocationHistory(UUID userId, int retention, int hotCapacity) {
+        if(retention < 1) {
+            throw new IllegalArgumentException("The retention must be positive: " + retention);
+        }
+        if(hotCapacity < 1) {
+            throw new IllegalArgumentException("The hot capacity must be positive: " + hotCapacity);
+        }
+        this.userId = userId;
+        this.retention = retention;
+        this.hotCapacity = Math.min(hotCapacity, retention);
+        this.buffer = EMPTY;
+    }
+    
+    public int getRetention() {
+        return retention;
+    }
+    
+    public int getHotCapacity() {
+        return hotCapacity;
+    }
+    
+    /**
+     * @return the bytes allocated off-heap for the older VisitedLocations.
+     */
+    public long getOffHeapBytes() {
+        return (long) buffer.coldCapacity() * COLD_RECORD_SIZE;
+    }
+    
+    /**
+     * Method to append a VisitedLocation, overwriting the oldest one when the retention is reached.
+     * <p>
+     * When the on-heap tier is full, its oldest VisitedLocation is moved off-heap before being overwritten.
+     * </p>
+     *
+     * @param visitedLocation the VisitedLocation to append.
+     * @return the sequence number of the VisitedLocation.
+     */
+    public synchronized long append(VisitedLocation visitedLocation) {
+        long next = sequence;
+        Buffer current = buffer;
+        if(next - firstSequence >= current.capacity() && current.capacity() < retention) {
+            current = grow(current, next);
+            buffer = current;
+        }
+        writingSequence = next + 1;
+        VarHandle.storeStoreFence();
+        int slot = (int) (next % current.hotCapacity());
+        if(current.cold != null && next >= current.hotCapacity()) {
+            current.writeCold(next - current.hotCapacity(), current.latitudes[slot], current.longitudes[slot],
+                    current.times[slot]);
+        }
+        current.latitudes[slot] = visitedLocation.location.latitude;
+        current.longitudes[slot] = visitedLocation.location.longitude;
+        current.times[slot] = visitedLocation.timeVisited.getTime();
+        sequence = next + 1;
+        return next;
+    }
+    
+    /**
+     * Method to drop all the VisitedLocations, the sequence numbers are not reused.
+     */
+    public synchronized void clear() {
+        firstSequence = sequence;
+    }
+    
+    /**
+     * Method to drop all the VisitedLocations and continue from the sequence number parsed, to restore a saved history.
+     *
+     * @param nextSequence the sequence number of the next VisitedLocation, not less than the current one.
+     */
+    public synchronized void skipTo(long nextSequence) {
+        if(nextSequence < sequence) {
+            throw new IllegalArgumentException("The sequence numbers are not reused: " + nextSequence);
+        }
+        // The readers reading the new sequence must see an empty history.
+        firstSequence = nextSequence;
+        writingSequence = nextSequence;
+        sequence = nextSequence;
+    }
+    
+    /**
+     * @return the sequence number of the next VisitedLocation.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * @return the number of VisitedLocations kept.
+     */
+    public int size() {
+        long end = sequence;
+        return (int) (end - Math.max(firstSequence, end - retention));
+    }
+    
+    public boolean isEmpty() {
+        return sequence == firstSequence;
+    }
+    
+    /**
+     * @return the last VisitedLocation, or null if the history is empty.
+     */
+    public VisitedLocation getLast() {
+        Snapshot snapshot = snapshot(sequence - 1);
+        return snapshot.size() == 0 ? null : snapshot.visitedLocation(snapshot.size() - 1);
+    }
+    
+    /**
+     * @return a copy of the VisitedLocations kept, from the oldest.
+     */
+    public List<VisitedLocation> toList() {
+        Snapshot snapshot = snapshot(0);
+        List<VisitedLocation> visitedLocations = new ArrayList<>(snapshot.size());
+        for(int i = 0; i < snapshot.size(); i++) {
+            visitedLocations.add(snapshot.visitedLocation(i));
+        }
+        return visitedLocations;
+    }
+    
+    /**
+     * Method to copy the VisitedLocations from the sequence number parsed, from both tiers, without lock.
+     * <p>
+     * The VisitedLocations overwritten or cleared before the copy ends are not in the Snapshot,
+     * use Snapshot#fromSequence to know the first one copied.
+     * A VisitedLocation moved off-heap during its copy is copied again.
+     * </p>
+     *
+     * @param fromSequence the sequence number of the first VisitedLocation wanted.
+     * @return the Snapshot of the VisitedLocations from the sequence number parsed to the last one.
+     */
+    public Snapshot snapshot(long fromSequence) {
+        while(true) {
+            long end = sequence;
+            Buffer current = buffer;
+            long start = Math.max(Math.max(fromSequence, firstSequence), end - current.capacity());
+            if(start >= end) {
+                return new Snapshot(userId, end, new double[0], new double[0], new long[0]);
+            }
+            int length = (int) (end - start);
+            double[] latitudes = new double[length];
+            double[] longitudes = new double[length];
+            long[] times = new long[length];
+            for(int i = 0; i < length; i++) {
+                current.read(start + i, end, latitudes, longitudes, times, i);
+            }
+            VarHandle.loadLoadFence();
+            
+            if(buffer != current) {
+                // The buffer grew during the copy, the slots are in the new buffer.
+                continue;
+            }
+            long written = writingSequence;
+            if(current.cold != null && written - current.hotCapacity() > Math.max(start, end - current.hotCapacity())) {
+                // On-heap slots were overwritten during the copy, their VisitedLocations are now off-heap.
+                continue;
+            }
+            long valid = Math.max(written - current.capacity(), firstSequence);
+            if(valid <= start) {
+                return new Snapshot(userId, start, latitudes, longitudes, times);
+            }
+            int dropped = (int) Math.min(valid - start, length);
+            return new Snapshot(userId, start + dropped, Arrays.copyOfRange(latitudes, dropped, length),
+                    Arrays.copyOfRange(longitudes, dropped, length), Arrays.copyOfRange(times, dropped, length));
+        }
+    }
+    
+    private Buffer grow(Buffer current, long next) {
+        // The on-heap tier grows by doubling, then the cold tier is added at once for the rest of the retention.
+        int capacity = current.capacity() < hotCapacity ?
+                Math.min(Math.max(INITIAL_CAPACITY, current.capacity() * 2), hotCapacity) : retention;
+        int grownHotCapacity = Math.min(capacity, hotCapacity);
+        Buffer grown = new Buffer(grownHotCapacity, capacity - grownHotCapacity);
+        double[] latitude = new double[1];
+        double[] longitude = new double[1];
+        long[] time = new long[1];
+        for(long s = Math.max(firstSequence, next - current.capacity()); s < next; s++) {
+            current.read(s, next, latitude, longitude, time, 0);
+            grown.write(s, next, latitude[0], longitude[0], time[0]);
+        }
+        return grown;
+    }
+    
+    /**
+     * The two tiers of the ring buffer.
+     * <p>
+     * For a history ending before the sequence number end, the VisitedLocations from end - hotCapacity are on-heap at
+     * their sequence number modulo hotCapacity, the older ones are off-heap at their sequence number modulo
+     * coldCapacity.
+     * </p>
+     *
+     * @param latitudes  the on-heap latitudes.
+     * @param longitudes the on-heap longitudes.
+     * @param times      the on-heap visit times in milliseconds.
+     * @param cold       the off-heap VisitedLocations, null while the on-heap tier holds the whole buffer.
+     */
+    private record Buffer(double[] latitudes, double[] longitudes, long[] times, ByteBuffer cold) {
+        
+        private Buffer(int hotCapacity, int coldCapacity) {
+            this(new double[hotCapacity], new double[hotCapacity], new long[hotCapacity], coldCapacity == 0 ? null :
+                    COLD_SLABS.allocate(coldCapacity * COLD_RECORD_SIZE));
+        }
+        
+        private int hotCapacity() {
+            return times.length;
+        }
+        
+        private int coldCapacity() {
+            return cold == null ? 0 : cold.capacity() / COLD_RECORD_SIZE;
+        }
+        
+        private int capacity() {
+            return hotCapacity() + coldCapacity();
+        }
+        
+        /**
+         * Copy the VisitedLocation of a sequence number into the arrays parsed, at their index i.
+         */
+        private void read(long sequence, long end, double[] latitudes, double[] longitudes, long[] times, int i) {
+            if(sequence >= end - hotCapacity()) {
+                int slot = (int) (sequence % hotCapacity());
+                latitudes[i] = this.latitudes[slot];
+                longitudes[i] = this.longitudes[slot];
+                times[i] = this.times[slot];
+            } else {
+                int offset = (int) (sequence % coldCapacity()) * COLD_RECORD_SIZE;
+                latitudes[i] = cold.getDouble(offset);
+                longitudes[i] = cold.getDouble(offset + Double.BYTES);
+                times[i] = cold.getLong(offset + 2 * Double.BYTES);
+            }
+        }
+        
+        private void write(long sequence, long end, double latitude, double longitude, long time) {
+            if(sequence >= end - hotCapacity()) {
+                int slot = (int) (sequence % hotCapacity());
+                latitudes[slot] = latitude;
+                longitudes[slot] = longitude;
+                times[slot] = time;
+            } else {
+                writeCold(sequence, latitude, longitude, time);
+            }
+        }
+        
+        private void writeCold(long sequence, double latitude, double longitude, long time) {
+            int offset = (int) (sequence % coldCapacity()) * COLD_RECORD_SIZE;
+            cold.putDouble(offset, latitude);
+            cold.putDouble(offset + Double.BYTES, longitude);
+            cold.putLong(offset + 2 * Double.BYTES, time);
+        }
+    }
+    
+    /**
+     * The direct slabs the cold tiers are carved from.
+     * <p>
+     * The regions are slices of the current slab, a full slab is replaced by a new one. A slab is freed by its Cleaner
+     * once all its regions are unreachable: the histories are never shrunk, so the regions live as long as the users.
+     * </p>
+     */
+    private static final class ColdSlabs {
+        
+        private ByteBuffer slab;
+        
+        private synchronized ByteBuffer allocate(int size) {
+            if(size > COLD_SLAB_SIZE) {
+                return ByteBuffer.allocateDirect(size)
+                        .order(ByteOrder.nativeOrder());
+            }
+            if(slab == null || slab.remaining() < size) {
+                slab = ByteBuffer.allocateDirect(COLD_SLAB_SIZE);
+            }
+            ByteBuffer region = slab.slice(slab.position(), size)
+                    .order(ByteOrder.nativeOrder());
+            slab.position(slab.position() + size);
+            return region;
+        }
+    }
+    
+    /**
+     * An immutable copy of consecutive VisitedLocations.
+     *
+     * @param userId       the user who visited the locations.
+     * @param fromSequence the sequence number of the first VisitedLocation copied.
+     * @param latitudes    the latitudes, from the oldest.
+     * @param longitudes   the longitudes, from the oldest.
+     * @param times        the visit times in milliseconds, from the oldest.
+     */
+    public record Snapshot(UUID userId, long fromSequence, double[] latitudes, double[] longitudes, long[] times) {
+        
+        public int size() {
+            return times.length;
+        }
+        
+        /**
+         * @return the sequence number following the last VisitedLocation copied.
+         */
+        public long toSequence() {
+            return fromSequence + times.length;
+        }
+        
+        public Location location(int i) {
+            return new Location(latitudes[i], longitudes[i]);
+        }
+        
+        public VisitedLocation visitedLocation(int i) {
+            return new VisitedLocation(userId, location(i), new Date(times[i]));
+        }
+    }
+}
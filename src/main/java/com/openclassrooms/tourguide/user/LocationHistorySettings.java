@@ -0,0 +1,22 @@
+package com.openclassrooms.tourguide.user;
+
+/**
+ * The settings of the LocationHistories, given by the repository to the users it creates.
+ *
+ * @param retention   the number of VisitedLocations kept per user.
+ * @param hotCapacity the number of last VisitedLocations kept on-heap per user, the older ones are kept off-heap.
+ */
+public record LocationHistorySettings(int retention, int hotCapacity) {
+    
+    public static final LocationHistorySettings DEFAULT =
+            new LocationHistorySettings(LocationHistory.DEFAULT_RETENTION, LocationHistory.DEFAULT_HOT_CAPACITY);
+    
+    public LocationHistorySettings {
+        if(retention < 1) {
+            throw new IllegalArgumentException("The retention must be positive: " + retention);
+        }
+        if(hotCapacity < 1) {
+            throw new IllegalArgumentException("The hot capacity must be positive: " + hotCapacity);
+        }
+    }
+}
@@ -1,17 +1,24 @@
 package com.openclassrooms.tourguide.user;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import gpsUtil.location.VisitedLocation;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import tripPricer.Provider;
 
 /**
  * The model to represent user and store locations, rewards, preferences, and personal's information.
+ * <p>
+ * A user is created with its identity only: the rewards, their ledger, the trip deals and the buffer of the
+ * locationHistory are allocated on their first write, the preferences are the shared UserPreferences.DEFAULT until
+ * they are set or got to be modified. The getters return empty immutable lists for the collections not yet written.
+ * </p>
  */
 @Setter
 @Getter
@@ -21,46 +28,215 @@ public class User {
     private String phoneNumber;
     private String emailAddress;
     private Date latestLocationTimestamp;
-    private List<VisitedLocation> visitedLocations = new ArrayList<>();
-    private List<UserReward> userRewards = new ArrayList<>();
-    private UserPreferences userPreferences = new UserPreferences();
-    private List<Provider> tripDeals = new ArrayList<>();
+    /**
+     * The VisitedLocations, appended by the tracking while the RewardPipeline reads them.
+     */
+    @Setter(AccessLevel.NONE)
+    private final LocationHistory locationHistory;
+    /**
+     * The rewards, read by the API while the RewardPipeline adds new ones, null until the first one.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile List<UserReward> userRewards;
+    /**
+     * The ledger of the rewarded attractions, indexed by the AttractionCatalog dense ids, null until the first one.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private BitSet rewardedAttractions;
+    /**
+     * The sequence number of the first VisitedLocation not yet evaluated for rewards,
+     * valid only for the rewardEvaluationStamp.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long rewardWatermark;
+    /**
+     * The stamp of the reward rules (attraction catalog and proximity) used to evaluate the visitedLocations.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long rewardEvaluationStamp;
+    /**
+     * The listener of the new VisitedLocations and UserRewards, set by the repository persisting the user.
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile UserJournal journal = UserJournal.NONE;
+    /**
+     * The preferences, null while the user keeps the shared defaults.
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile UserPreferences userPreferences;
+    /**
+     * The last trip deals, null until the first request.
+     */
+    @Getter(AccessLevel.NONE)
+    private List<Provider> tripDeals;
     
     public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
+        this(userId, userName, phoneNumber, emailAddress, LocationHistorySettings.DEFAULT);
+    }
+    
+    /**
+     * @param locationHistorySettings the retention and hot capacity of the LocationHistory of the user.
+     */
+    public User(UUID userId, String userName, String phoneNumber, String emailAddress,
+                LocationHistorySettings locationHistorySettings) {
         this.userId = userId;
         this.userName = userName;
         this.phoneNumber = phoneNumber;
         this.emailAddress = emailAddress;
+        this.locationHistory = new LocationHistory(userId, locationHistorySettings);
+    }
+    
+    /**
+     * Method to verify if the attraction of the id parsed is already rewarded in the user's userRewards.
+     *
+     * @param attractionId the dense id of the attraction in the AttractionCatalog.
+     * @return true if the attraction is rewarded.
+     */
+    public synchronized boolean isAttractionRewarded(int attractionId) {
+        return rewardedAttractions != null && rewardedAttractions.get(attractionId);
+    }
+    
+    /**
+     * Method to save the UserReward parsed into the user's userRewards if its attraction is not already rewarded.
+     *
+     * @param attractionId the dense id of the attraction in the AttractionCatalog.
+     * @param userReward   the userReward to save into the user's userRewards.
+     * @return true if the userReward is saved.
+     */
+    public synchronized boolean addUserReward(int attractionId, UserReward userReward) {
+        if(isAttractionRewarded(attractionId)) {
+            return false;
+        }
+        if(rewardedAttractions == null) {
+            rewardedAttractions = new BitSet();
+            userRewards = new CopyOnWriteArrayList<>();
+        }
+        rewardedAttractions.set(attractionId);
+        userRewards.add(userReward);
+        journal.userRewardAdded(this, attractionId, userReward);
+        return true;
+    }
+    
+    /**
+     * @return a live, thread-safe view of the rewards, or an empty immutable list before the first one.
+     */
+    public List<UserReward> getUserRewards() {
+        List<UserReward> rewards = userRewards;
+        return rewards == null ? List.of() : rewards;
     }
     
-    public void addUserReward(List<UserReward> newUserRewards) {
-        for(UserReward userReward : newUserRewards) {
-            addUserReward(userReward);
+    /**
+     * Return the preferences of the user, to read or to modify in place.
+     * <p>
+     * A user keeping the shared defaults gets its own copy of them on the first call,
+     * the read-only UserPreferences.DEFAULT is never returned.
+     * </p>
+     *
+     * @return the preferences of the user.
+     * @see #readUserPreferences()
+     */
+    public UserPreferences getUserPreferences() {
+        UserPreferences preferences = userPreferences;
+        if(preferences != null) {
+            return preferences;
         }
+        synchronized(this) {
+            if(userPreferences == null) {
+                userPreferences = new UserPreferences();
+            }
+            return userPreferences;
+        }
+    }
+    
+    /**
+     * Return the preferences of the user to read only, without copying the shared defaults.
+     *
+     * @return the preferences of the user, the shared read-only UserPreferences.DEFAULT if they were never set nor got.
+     * @see #getUserPreferences()
+     */
+    public UserPreferences readUserPreferences() {
+        UserPreferences preferences = userPreferences;
+        return preferences == null ? UserPreferences.DEFAULT : preferences;
+    }
+    
+    /**
+     * @return the last trip deals, or an empty immutable list before the first request.
+     */
+    public List<Provider> getTripDeals() {
+        List<Provider> deals = tripDeals;
+        return deals == null ? List.of() : deals;
     }
     
     /**
-     * Method to verify if the attraction of the UserReward parsed is already rewarded in the user's userRewards.
+     * Method to get the sequence number of the first VisitedLocation not yet evaluated for rewards.
      * <p>
-     * @param userReward the userReward to save into the user's userRewards.
+     * If the VisitedLocations were evaluated with other reward rules, all of them must be evaluated.
      * </p>
+     *
+     * @param evaluationStamp the stamp of the current reward rules.
+     * @return the sequence number following the VisitedLocations already evaluated with these rules.
+     * @see LocationHistory#snapshot(long)
+     */
+    public synchronized long getRewardWatermark(long evaluationStamp) {
+        if(evaluationStamp != rewardEvaluationStamp) {
+            return 0;
+        }
+        return rewardWatermark;
+    }
+    
+    /**
+     * Method to save the sequence number following the VisitedLocations evaluated for rewards.
+     *
+     * @param evaluationStamp the stamp of the reward rules used for the evaluation.
+     * @param evaluatedTo     the sequence number following the last VisitedLocation evaluated.
      */
-    public void addUserReward(UserReward userReward) {
-        if(userRewards.stream()
-                .noneMatch(u -> u.attraction.attractionName.contains(userReward.attraction.attractionName))) {
-            userRewards.add(userReward);
+    public synchronized void advanceRewardWatermark(long evaluationStamp, long evaluatedTo) {
+        if(evaluationStamp != rewardEvaluationStamp) {
+            rewardEvaluationStamp = evaluationStamp;
+            rewardWatermark = evaluatedTo;
+        } else {
+            rewardWatermark = Math.max(rewardWatermark, evaluatedTo);
         }
     }
     
+    /**
+     * @return a copy of the VisitedLocations kept in the user's locationHistory, from the oldest.
+     */
+    public List<VisitedLocation> getVisitedLocations() {
+        return locationHistory.toList();
+    }
+    
+    /**
+     * @return the last VisitedLocation, or null if the user has not been tracked.
+     */
     public VisitedLocation getLastVisitedLocation() {
-        return visitedLocations.getLast();
+        return locationHistory.getLast();
     }
     
+    /**
+     * Method to append a VisitedLocation to the user's locationHistory and notify the journal.
+     * <p>
+     * The locationHistory stays locked until the journal is notified,
+     * so the journal receives the VisitedLocations in the order of their sequence numbers.
+     * </p>
+     *
+     * @param visitedLocation the VisitedLocation to append.
+     */
     public void addToVisitedLocations(VisitedLocation visitedLocation) {
-        visitedLocations.add(visitedLocation);
+        synchronized(locationHistory) {
+            long sequence = locationHistory.append(visitedLocation);
+            journal.visitedLocationAppended(this, sequence, visitedLocation);
+        }
     }
     
     public void clearVisitedLocations() {
-        visitedLocations.clear();
+        synchronized(locationHistory) {
+            locationHistory.clear();
+            journal.visitedLocationsCleared(this, locationHistory.getSequence());
+        }
     }
 }
@@ -0,0 +1,44 @@
+package com.openclassrooms.tourguide.user;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Listener of the changes of a User, to persist them.
+ * <p>
+ * The changes of a user are notified in their order, while the user or its LocationHistory is locked:
+ * the methods must not block.
+ * </p>
+ *
+ * @see User#setJournal(UserJournal)
+ */
+public interface UserJournal {
+    
+    /**
+     * The journal of the users not persisted.
+     */
+    UserJournal NONE = new UserJournal() {
+    };
+    
+    /**
+     * @param user            the user located.
+     * @param sequence        the sequence number of the VisitedLocation in the user's LocationHistory.
+     * @param visitedLocation the VisitedLocation appended.
+     */
+    default void visitedLocationAppended(User user, long sequence, VisitedLocation visitedLocation) {
+    }
+    
+    /**
+     * @param user     the user whose VisitedLocations are dropped.
+     * @param sequence the sequence number of the next VisitedLocation of the user.
+     */
+    default void visitedLocationsCleared(User user, long sequence) {
+    }
+    
+    /**
+     * @param user         the user rewarded.
+     * @param attractionId the dense id of the attraction in the AttractionCatalog.
+     * @param userReward   the UserReward added.
+     */
+    default void userRewardAdded(User user, int attractionId, UserReward userReward) {
+    }
+}
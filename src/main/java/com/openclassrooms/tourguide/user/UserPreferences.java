@@ -6,12 +6,53 @@ import lombok.Setter;
 
 /**
  * Model to store preferences of the user.
+ * <p>
+ * The users keeping the default preferences share the DEFAULT instance, which is read-only:
+ * User.getUserPreferences replaces it by a copy of the defaults before returning it.
+ * </p>
  */
 @Setter
 @Getter
 @NoArgsConstructor
 public class UserPreferences {
     
+    /**
+     * The default preferences shared by the users, its setters throw UnsupportedOperationException.
+     *
+     * @see User#readUserPreferences()
+     * @see User#getUserPreferences()
+     */
+    public static final UserPreferences DEFAULT = new UserPreferences() {
+        @Override
+        public void setAttractionProximity(int attractionProximity) {
+            throw readOnly();
+        }
+        
+        @Override
+        public void setTripDuration(int tripDuration) {
+            throw readOnly();
+        }
+        
+        @Override
+        public void setTicketQuantity(int ticketQuantity) {
+            throw readOnly();
+        }
+        
+        @Override
+        public void setNumberOfAdults(int numberOfAdults) {
+            throw readOnly();
+        }
+        
+        @Override
+        public void setNumberOfChildren(int numberOfChildren) {
+            throw readOnly();
+        }
+        
+        private UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("The default preferences are shared, set new UserPreferences");
+        }
+    };
+    
     private int attractionProximity = Integer.MAX_VALUE;
     private int tripDuration = 1;
     private int ticketQuantity = 1;
@@ -0,0 +1,72 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.client.GpsClient;
+import gpsUtil.location.Attraction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TestAttractionCatalog {
+
+    @Mock
+    private GpsClient gpsClient;
+
+    private AttractionCatalog attractionCatalog;
+
+    @BeforeEach
+    public void setUp() {
+        attractionCatalog = new AttractionCatalog(gpsClient);
+    }
+
+    @Test
+    public void shouldLoadAttractionsOnceTest() {
+        when(gpsClient.getAttractions()).thenReturn(List.of(disneyland()));
+
+        AttractionCatalog.Snapshot snapshot = attractionCatalog.getSnapshot();
+
+        assertSame(snapshot, attractionCatalog.getSnapshot());
+        assertEquals(1, snapshot.size());
+        assertEquals(1, snapshot.version());
+        verify(gpsClient, times(1)).getAttractions();
+    }
+
+    @Test
+    public void shouldKeepVersionWhenAttractionsAreUnchangedTest() {
+        when(gpsClient.getAttractions()).thenReturn(List.of(disneyland()), List.of(disneyland()));
+
+        AttractionCatalog.Snapshot snapshot = attractionCatalog.getSnapshot();
+
+        assertSame(snapshot, attractionCatalog.refresh());
+        assertEquals(1, attractionCatalog.getVersion());
+    }
+
+    @Test
+    public void shouldIncrementVersionWhenAttractionsChangeTest() {
+        when(gpsClient.getAttractions()).thenReturn(List.of(disneyland()),
+                List.of(disneyland(), new Attraction("Jackson Hole", "Jackson Hole", "WY", 43.582767, -110.821999)));
+
+        attractionCatalog.getSnapshot();
+        AttractionCatalog.Snapshot snapshot = attractionCatalog.refresh();
+
+        assertEquals(2, snapshot.version());
+        assertEquals(2, snapshot.size());
+        assertEquals(2, snapshot.index()
+                .size());
+    }
+
+    private Attraction disneyland() {
+        return new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+    }
+}
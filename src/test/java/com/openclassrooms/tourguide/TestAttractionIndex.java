@@ -0,0 +1,162 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.attraction.GreatCircle;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestAttractionIndex {
+
+    private List<Attraction> attractions;
+    private AttractionIndex attractionIndex;
+    private final Random random = new Random(42);
+
+    @BeforeEach
+    public void setUp() {
+        attractions = new ArrayList<>();
+        for(int i = 0; i < 500; i++) {
+            attractions.add(new Attraction("Attraction" + i, "City", "State", randomLatitude(), randomLongitude()));
+        }
+        attractionIndex = AttractionIndex.of(attractions);
+    }
+
+    @Test
+    public void nearestShouldMatchFullScanTest() {
+        for(int i = 0; i < 100; i++) {
+            Location location = new Location(randomLatitude(), randomLongitude());
+
+            List<Attraction> expected = attractions.stream()
+                    .sorted(Comparator.comparingDouble(attraction -> distance(attraction, location)))
+                    .limit(5)
+                    .toList();
+
+            assertEquals(expected, attractionIndex.nearest(location, 5));
+        }
+    }
+
+    @Test
+    public void withinRadiusShouldMatchFullScanTest() {
+        for(int i = 0; i < 100; i++) {
+            Location location = new Location(randomLatitude(), randomLongitude());
+            double miles = random.nextDouble() * 2000;
+
+            List<Attraction> expected = attractions.stream()
+                    .filter(attraction -> distance(attraction, location) < miles)
+                    .toList();
+
+            assertEquals(new HashSet<>(expected), new HashSet<>(attractionIndex.withinRadius(location, miles)));
+        }
+    }
+
+    @Test
+    public void forEachIdWithinRadiusShouldMatchFullScanTest() {
+        for(int i = 0; i < 100; i++) {
+            Location location = new Location(randomLatitude(), randomLongitude());
+            double miles = random.nextDouble() * 2000;
+
+            HashSet<Integer> expected = new HashSet<>();
+            for(int id = 0; id < attractions.size(); id++) {
+                if(distance(attractions.get(id), location) < miles) {
+                    expected.add(id);
+                }
+            }
+            HashSet<Integer> actual = new HashSet<>();
+            attractionIndex.forEachIdWithinRadius(location.latitude, location.longitude, GreatCircle.radius(miles),
+                    actual::add);
+
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void treeShouldMatchLinearScanTest() {
+        List<Attraction> manyAttractions = new ArrayList<>();
+        for(int i = 0; i < AttractionIndex.LINEAR_SCAN_MAX_SIZE * 4; i++) {
+            manyAttractions.add(new Attraction("Attraction" + i, "City", "State", randomLatitude(), randomLongitude()));
+        }
+        AttractionIndex treeIndex = AttractionIndex.of(manyAttractions);
+        for(int i = 0; i < 100; i++) {
+            Location location = new Location(randomLatitude(), randomLongitude());
+            double miles = random.nextDouble() * 2000;
+
+            List<Attraction> expected = manyAttractions.stream()
+                    .filter(attraction -> distance(attraction, location) < miles)
+                    .toList();
+
+            assertEquals(new HashSet<>(expected), new HashSet<>(treeIndex.withinRadius(location, miles)));
+        }
+    }
+
+    @Test
+    public void proximityScanShouldBeVectorizedTest() {
+        // The surefire argLine adds the jdk.incubator.vector module.
+        assertTrue(AttractionIndex.getProximityScanName()
+                .startsWith("vector"));
+    }
+
+    @Test
+    public void greatCircleShouldMatchExactDistanceTest() {
+        for(int i = 0; i < 100; i++) {
+            Location loc1 = new Location(randomLatitude(), randomLongitude());
+            Location loc2 = new Location(randomLatitude(), randomLongitude());
+            double miles = distance(loc1, loc2);
+
+            assertEquals(miles, GreatCircle.miles(loc1.latitude, loc1.longitude, loc2.latitude, loc2.longitude), 1e-6);
+            assertTrue(GreatCircle.isWithin(loc1.latitude, loc1.longitude, loc2.latitude, loc2.longitude,
+                    GreatCircle.radius(miles + 1)));
+            assertFalse(GreatCircle.isWithin(loc1.latitude, loc1.longitude, loc2.latitude, loc2.longitude,
+                    GreatCircle.radius(miles - 1)));
+        }
+    }
+
+    @Test
+    public void withinRadiusShouldReturnAllAttractionsTest() {
+        Location location = new Location(randomLatitude(), randomLongitude());
+
+        assertEquals(attractions.size(), attractionIndex.withinRadius(location, Integer.MAX_VALUE)
+                .size());
+    }
+
+    @Test
+    public void emptyIndexTest() {
+        AttractionIndex emptyIndex = AttractionIndex.of(List.of());
+        Location location = new Location(randomLatitude(), randomLongitude());
+
+        assertTrue(emptyIndex.nearest(location, 5)
+                .isEmpty());
+        assertTrue(emptyIndex.withinRadius(location, 10)
+                .isEmpty());
+    }
+
+    private double randomLatitude() {
+        return -85 + random.nextDouble() * 170;
+    }
+
+    private double randomLongitude() {
+        return -180 + random.nextDouble() * 360;
+    }
+
+    private double distance(Location loc1, Location loc2) {
+        double lat1 = Math.toRadians(loc1.latitude);
+        double lon1 = Math.toRadians(loc1.longitude);
+        double lat2 = Math.toRadians(loc2.latitude);
+        double lon2 = Math.toRadians(loc2.longitude);
+
+        double angle =
+                Math.acos(Math.sin(lat1) * Math.sin(lat2) + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
+
+        return 1.15077945 * 60 * Math.toDegrees(angle);
+    }
+}
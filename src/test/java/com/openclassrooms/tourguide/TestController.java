@@ -1,10 +1,12 @@
 package com.openclassrooms.tourguide;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.tourguide.controller.TourGuideController;
 import com.openclassrooms.tourguide.dto.NearAttractionDto;
 import com.openclassrooms.tourguide.dto.NearAttractionsListDto;
 import com.openclassrooms.tourguide.dto.TripDealsDto;
+import com.openclassrooms.tourguide.dto.UserBatchDto;
 import com.openclassrooms.tourguide.dto.UserLocationDto;
 import com.openclassrooms.tourguide.dto.UserRewardsDto;
 import com.openclassrooms.tourguide.service.DtoService;
@@ -16,18 +18,32 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import tripPricer.Provider;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = TourGuideController.class)
@@ -55,9 +71,14 @@ public class TestController {
         String username = "Test";
         UserLocationDto result = new UserLocationDto(UUID.randomUUID(), new Location(56.00, 81.12), new Date());
         
-        when(dtoService.userLocationGenerator(username)).thenReturn(result);
+        when(dtoService.userLocationGeneratorAsync(username)).thenReturn(CompletableFuture.completedFuture(result));
+        when(dtoService.getETag(username)).thenReturn("3-3-0-1");
         
-        mvc.perform(get("/getLocation").param("userName", username))
+        MvcResult mvcResult = mvc.perform(get("/getLocation").param("userName", username))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        
+        mvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.userId").value(result.userId()
                         .toString()))
@@ -70,13 +91,19 @@ public class TestController {
         NearAttractionDto nearAttractionDto = new NearAttractionDto("Test", 55.00, 58.15, 48.25, 68.14, 25.19, 289);
         NearAttractionsListDto result = new NearAttractionsListDto(UUID.randomUUID(), List.of(nearAttractionDto));
         
-        when(dtoService.nearAttractionsListGenerator(username)).thenReturn(result);
+        when(dtoService.nearAttractionsListGeneratorAsync(username)).thenReturn(CompletableFuture.completedFuture(result));
+        when(dtoService.getETag(username)).thenReturn("3-3-0-1");
+        
+        MvcResult mvcResult = mvc.perform(get("/getNearbyAttractions").param("userName", username))
+                .andExpect(request().asyncStarted())
+                .andReturn();
         
-        mvc.perform(get("/getNearbyAttractions").param("userName", username))
+        mvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.userId").value(result.userId()
                         .toString()))
                 .andExpect(jsonPath("$.nearAttractionList.size()").value(1))
+                .andExpect(header().string("ETag", "\"3-3-0-1\""))
                 .andDo(print());
     }
     
@@ -88,9 +115,14 @@ public class TestController {
                 List.of(new UserReward(new VisitedLocation(UUID.randomUUID(), new Location(45.02, 98.08), new Date()),
                         new Attraction("Attration", "City", "State", 45.03, 98.00))));
         
-        when(dtoService.UserRewardsListGenerator(username)).thenReturn(result);
+        when(dtoService.UserRewardsListGeneratorAsync(username)).thenReturn(CompletableFuture.completedFuture(result));
+        when(dtoService.getETag(username)).thenReturn("3-3-0-1");
+        
+        MvcResult mvcResult = mvc.perform(get("/getRewards").param("userName", username))
+                .andExpect(request().asyncStarted())
+                .andReturn();
         
-        mvc.perform(get("/getRewards").param("userName", username))
+        mvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.userId").value(result.userId().toString()))
                 .andExpect(jsonPath("$.userRewards.size()").value(1))
@@ -103,12 +135,127 @@ public class TestController {
         
         TripDealsDto result = new TripDealsDto(UUID.randomUUID(), List.of(new Provider(UUID.randomUUID(), "Test", 12.24)));
   
-        when(dtoService.TripDealListGenerator(username)).thenReturn(result);
+        when(dtoService.TripDealListGeneratorAsync(username)).thenReturn(CompletableFuture.completedFuture(result));
         
-        mvc.perform(get("/getTripDeals").param("userName", username))
+        MvcResult mvcResult = mvc.perform(get("/getTripDeals").param("userName", username))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        
+        mvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.userId").value(result.userId().toString()))
                 .andExpect(jsonPath("$.providers.size()").value(1))
                 .andDo(print());
     }
+    
+    @Test
+    void shouldStreamTheRewardsOfAllUsersTest() throws Exception {
+        UserBatchDto userBatch = new UserBatchDto(List.of("Test", "Test2"), List.of());
+        UserRewardsDto first = new UserRewardsDto(UUID.randomUUID(), List.of());
+        UserRewardsDto second = new UserRewardsDto(UUID.randomUUID(), List.of());
+        Map<UUID, CompletableFuture<UserRewardsDto>> results = new LinkedHashMap<>();
+        results.put(first.userId(), CompletableFuture.completedFuture(first));
+        results.put(second.userId(), CompletableFuture.completedFuture(second));
+        
+        when(dtoService.userRewardsListsGenerator(userBatch)).thenReturn(results);
+        
+        MvcResult mvcResult = mvc.perform(post("/batch/getRewards").contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(userBatch)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        
+        mvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", MediaType.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string(mapper.writeValueAsString(first) + "\n" +
+                        mapper.writeValueAsString(second) + "\n"))
+                .andDo(print());
+    }
+    
+    @Test
+    void shouldStreamAnErrorLineForAFailedUserTest() throws Exception {
+        UserBatchDto userBatch = new UserBatchDto(List.of("Test", "Test2"), List.of());
+        UUID failedUserId = UUID.randomUUID();
+        UserRewardsDto second = new UserRewardsDto(UUID.randomUUID(), List.of());
+        Map<UUID, CompletableFuture<UserRewardsDto>> results = new LinkedHashMap<>();
+        results.put(failedUserId, CompletableFuture.failedFuture(new IllegalStateException()));
+        results.put(second.userId(), CompletableFuture.completedFuture(second));
+        
+        when(dtoService.userRewardsListsGenerator(userBatch)).thenReturn(results);
+        
+        MvcResult mvcResult = mvc.perform(post("/batch/getRewards").contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(userBatch)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        
+        mvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "{\"userId\":\"" + failedUserId + "\",\"error\":\"IllegalStateException\"}\n" +
+                                mapper.writeValueAsString(second) + "\n"))
+                .andDo(print());
+    }
+    
+    @Test
+    void shouldRejectATooLargeBatchTest() throws Exception {
+        UserBatchDto userBatch = new UserBatchDto(List.of(), Collections.nCopies(UserBatchDto.MAX_SIZE + 1,
+                UUID.randomUUID()));
+        
+        mvc.perform(post("/batch/getLocation").contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(userBatch)))
+                .andExpect(status().isBadRequest());
+        
+        verify(dtoService, never()).userLocationsGenerator(any());
+    }
+    
+    @Test
+    void shouldStreamAllCurrentLocationsTest() throws Exception {
+        UUID userId = UUID.randomUUID();
+        doAnswer(invocation -> {
+            JsonGenerator generator = invocation.getArgument(0);
+            generator.writeStartObject();
+            generator.writeObjectFieldStart(userId.toString());
+            generator.writeStringField("userId", userId.toString());
+            generator.writeObjectFieldStart("location");
+            generator.writeNumberField("longitude", 81.12);
+            generator.writeNumberField("latitude", 56.00);
+            generator.writeEndObject();
+            generator.writeFieldName("timeVisited");
+            generator.writeObject(new Date(0));
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.flush();
+            return null;
+        }).when(dtoService)
+                .writeAllCurrentLocations(any());
+        
+        MvcResult mvcResult = mvc.perform(get("/getAllCurrentLocations"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        
+        mvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['" + userId + "'].location.longitude").value(81.12))
+                .andExpect(jsonPath("$['" + userId + "'].location.latitude").value(56.00))
+                .andExpect(jsonPath("$['" + userId + "'].timeVisited").value("1970-01-01T00:00:00.000+00:00"))
+                .andDo(print());
+    }
+    
+    @Test
+    void shouldAnswerNotModifiedToAnUnchangedUserTest() throws Exception {
+        String username = "Test";
+        
+        when(dtoService.getETag(username)).thenReturn("3-3-0-1");
+        
+        MvcResult mvcResult = mvc.perform(get("/getNearbyAttractions").param("userName", username)
+                        .header("If-None-Match", "\"3-3-0-1\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        
+        mvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""))
+                .andDo(print());
+        verify(dtoService, never()).nearAttractionsListGeneratorAsync(username);
+    }
 }
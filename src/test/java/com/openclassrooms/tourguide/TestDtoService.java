@@ -1,11 +1,24 @@
 package com.openclassrooms.tourguide;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.openclassrooms.tourguide.client.GpsClient;
+import com.openclassrooms.tourguide.client.GpsUtilClient;
+import com.openclassrooms.tourguide.client.RewardClient;
+import com.openclassrooms.tourguide.client.TripPricingClient;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.gateway.RewardPointsGateway;
 import com.openclassrooms.tourguide.dto.NearAttractionsListDto;
 import com.openclassrooms.tourguide.dto.TripDealsDto;
+import com.openclassrooms.tourguide.dto.UserBatchDto;
 import com.openclassrooms.tourguide.dto.UserLocationDto;
 import com.openclassrooms.tourguide.dto.UserRewardsDto;
 import com.openclassrooms.tourguide.internalUser.InternalTestHelper;
 import com.openclassrooms.tourguide.service.DtoService;
+import com.openclassrooms.tourguide.service.RewardPipeline;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.service.UserService;
@@ -16,15 +29,17 @@ import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.springframework.boot.test.context.SpringBootTest;
-import rewardCentral.RewardCentral;
-import tripPricer.TripPricer;
 
+import java.io.StringWriter;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
@@ -42,13 +57,13 @@ public class TestDtoService {
     private DtoService dtoService;
     
     @Mock
-    private GpsUtil gpsUtil;
+    private GpsClient gpsClient;
     
     @Mock
-    private RewardCentral rewardCentral;
+    private RewardClient rewardClient;
     
     @Mock
-    private TripPricer tripPricer;
+    private TripPricingClient tripPricingClient;
     
     User user;
     VisitedLocation visitedLocation;
@@ -61,9 +76,11 @@ public class TestDtoService {
     @BeforeEach
     public void setUp() {
         InternalTestHelper.setInternalUserNumber(0);
-        rewardsService = new RewardsService(rewardCentral);
-        tourGuideService = new TourGuideService(gpsUtil, rewardsService);
-        userService = new UserService(rewardsService);
+        AttractionCatalog attractionCatalog = new AttractionCatalog(gpsClient);
+        rewardsService = new RewardsService(new RewardPointsGateway(rewardClient), attractionCatalog);
+        tourGuideService = new TourGuideService(attractionCatalog);
+        userService = new UserService(new InMemoryUserRepository(), new GpsGateway(new GpsUtilClient(new GpsUtil())),
+                new RewardPipeline(rewardsService));
         dtoService = new DtoService(tourGuideService, rewardsService, userService);
         
         
@@ -74,12 +91,19 @@ public class TestDtoService {
         userReward = new UserReward(visitedLocation, attraction, 158);
         user.addToVisitedLocations(visitedLocation);
         userPreferences = new UserPreferences();
-        userService.internalUserMap.put(username, user);
+        userService.addUser(user);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        dtoService.close();
+        userService.tracker.stopTracking();
+        rewardsService.close();
     }
     
     @Test
     void shouldReturnTheNearAttractionListDtoTest() {
-        when(gpsUtil.getAttractions()).thenReturn(
+        when(gpsClient.getAttractions()).thenReturn(
                 List.of(new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008)));
         NearAttractionsListDto result = dtoService.nearAttractionsListGenerator(username);
         
@@ -112,4 +136,60 @@ public class TestDtoService {
         assertEquals(user.getUserId(), result.userId());
         assertEquals(user.getUserRewards().size(), result.userRewards().size());
     }
+    
+    @Test
+    void shouldReturnTheUserLocationDtoOfAllUsersTest() {
+        User otherUser = new User(UUID.randomUUID(), "Test2", "phoneNumber", "email");
+        otherUser.addToVisitedLocations(new VisitedLocation(otherUser.getUserId(), location, new java.util.Date()));
+        userService.addUser(otherUser);
+        
+        List<UserLocationDto> result = dtoService.userLocationsGenerator(
+                        new UserBatchDto(List.of(username, "unknown"), List.of(otherUser.getUserId(), user.getUserId())))
+                .values()
+                .stream()
+                .map(CompletableFuture::join)
+                .toList();
+        
+        assertEquals(2, result.size());
+        assertEquals(user.getUserId(), result.get(0)
+                .userId());
+        assertEquals(otherUser.getUserId(), result.get(1)
+                .userId());
+    }
+    
+    @Test
+    void shouldWriteTheCurrentLocationOfAllUsersTest() throws Exception {
+        StringWriter writer = new StringWriter();
+        ObjectMapper objectMapper = new ObjectMapper().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        JsonGenerator generator = objectMapper.getFactory()
+                .createGenerator(writer);
+        
+        dtoService.writeAllCurrentLocations(generator);
+        
+        assertEquals("{\"" + user.getUserId() + "\":" + objectMapper.writeValueAsString(
+                dtoService.userLocationGenerator(username)) + "}", writer.toString());
+    }
+    
+    @Test
+    void shouldRejectTheAsyncGenerationsOnceClosedTest() {
+        dtoService.close();
+        
+        assertThrows(RejectedExecutionException.class, () -> dtoService.userLocationGeneratorAsync(username));
+    }
+    
+    @Test
+    void shouldCacheTheNearAttractionListDtoUntilTheUserChangesTest() {
+        when(gpsClient.getAttractions()).thenReturn(
+                List.of(new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008)));
+        NearAttractionsListDto first = dtoService.nearAttractionsListGenerator(username);
+        String eTag = dtoService.getETag(username);
+        
+        assertSame(first, dtoService.nearAttractionsListGenerator(username));
+        assertEquals(eTag, dtoService.getETag(username));
+        
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, new java.util.Date()));
+        
+        assertNotEquals(eTag, dtoService.getETag(username));
+        assertNotSame(first, dtoService.nearAttractionsListGenerator(username));
+    }
 }
@@ -0,0 +1,131 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.client.GpsClient;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestGpsGateway {
+    
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private volatile long latencyMillis = 20;
+    
+    private GpsGateway gpsGateway;
+    
+    /**
+     * GpsClient stand-in with a settable latency, counting the concurrent calls.
+     */
+    private final GpsClient gpsClient = new GpsClient() {
+        @Override
+        public List<Attraction> getAttractions() {
+            return List.of();
+        }
+        
+        @Override
+        public VisitedLocation getUserLocation(UUID userId) {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            } catch(InterruptedException e) {
+                Thread.currentThread()
+                        .interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return new VisitedLocation(userId, new Location(0, 0), new Date());
+        }
+    };
+    
+    @AfterEach
+    public void tearDown() {
+        gpsGateway.close();
+    }
+    
+    @Test
+    public void shouldLimitConcurrentCallsTest() throws InterruptedException {
+        gpsGateway = new GpsGateway(gpsClient, 1, 4, Duration.ofSeconds(1), Duration.ofSeconds(10));
+        
+        List<CompletableFuture<VisitedLocation>> futures = new ArrayList<>();
+        for(int i = 0; i < 40; i++) {
+            futures.add(gpsGateway.getUserLocation(UUID.randomUUID()));
+        }
+        futures.forEach(CompletableFuture::join);
+        
+        assertEquals(40, gpsGateway.getCallCount());
+        assertTrue(maxRunning.get() <= 4);
+        assertEquals(4, gpsGateway.getLimit());
+    }
+    
+    @Test
+    public void shouldDecreaseLimitWhenCallsAreSlowTest() throws InterruptedException {
+        gpsGateway = new GpsGateway(gpsClient, 2, 10, Duration.ofMillis(5), Duration.ofSeconds(10));
+        
+        for(int i = 0; i < 20; i++) {
+            gpsGateway.getUserLocation(UUID.randomUUID())
+                    .join();
+        }
+        
+        assertTrue(gpsGateway.getLimit() < 10);
+    }
+    
+    @Test
+    public void shouldTimeOutSlowCallsTest() throws InterruptedException {
+        latencyMillis = 500;
+        gpsGateway = new GpsGateway(gpsClient, 1, 4, Duration.ofSeconds(1), Duration.ofMillis(50));
+        
+        CompletableFuture<VisitedLocation> future = gpsGateway.getUserLocation(UUID.randomUUID());
+        
+        CompletionException exception = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+        assertEquals(1, gpsGateway.getTimeoutCount());
+    }
+    
+    @Test
+    public void shouldCompleteAndReleaseACallFailingWithAnErrorTest() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        GpsClient failingClient = new GpsClient() {
+            @Override
+            public List<Attraction> getAttractions() {
+                return List.of();
+            }
+            
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                if(calls.incrementAndGet() == 1) {
+                    throw new StackOverflowError();
+                }
+                return new VisitedLocation(userId, new Location(0, 0), new Date());
+            }
+        };
+        gpsGateway = new GpsGateway(failingClient, 1, 1, Duration.ofSeconds(1), Duration.ofSeconds(10));
+        
+        CompletionException exception = assertThrows(CompletionException.class,
+                gpsGateway.getUserLocation(UUID.randomUUID())::join);
+        assertInstanceOf(StackOverflowError.class, exception.getCause());
+        // The single permit is back: the next call runs.
+        gpsGateway.getUserLocation(UUID.randomUUID())
+                .join();
+        assertEquals(1, gpsGateway.getFailureCount());
+        assertEquals(0, gpsGateway.getInFlight());
+    }
+}
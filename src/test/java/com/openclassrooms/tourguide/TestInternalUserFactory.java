@@ -0,0 +1,105 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.client.GpsClient;
+import com.openclassrooms.tourguide.client.GpsUtilClient;
+import com.openclassrooms.tourguide.client.RewardCentralClient;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.gateway.RewardPointsGateway;
+import com.openclassrooms.tourguide.internalUser.InternalTestHelper;
+import com.openclassrooms.tourguide.internalUser.InternalUserFactory;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.service.RewardPipeline;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.UserService;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rewardCentral.RewardCentral;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestInternalUserFactory {
+    
+    private final List<UserService> userServices = new ArrayList<>();
+    private RewardsService rewardsService;
+    private GpsClient gpsClient;
+    
+    @BeforeEach
+    public void setUp() {
+        gpsClient = new GpsUtilClient(new GpsUtil());
+        rewardsService = new RewardsService(new RewardPointsGateway(new RewardCentralClient(new RewardCentral())),
+                new AttractionCatalog(gpsClient));
+        InternalTestHelper.setInternalUserNumber(2500);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        userServices.forEach(userService -> userService.tracker.stopTracking());
+        InternalTestHelper.setInternalUserNumber(100);
+    }
+    
+    @Test
+    public void shouldGenerateTheSameUsersForTheSameSeedTest() {
+        UserService first = userService();
+        UserService second = userService();
+        
+        new InternalUserFactory(first, 42, "");
+        new InternalUserFactory(second, 42, "");
+        
+        assertEquals(2500, first.getUserCount());
+        for(int i = 0; i < 2500; i += 499) {
+            User user = first.getUserByUsername("internalUser" + i);
+            User sameUser = second.getUserByUsername("internalUser" + i);
+            assertEquals(user.getUserId(), sameUser.getUserId());
+            assertEquals(3, user.getVisitedLocations()
+                    .size());
+            assertEquals(user.getVisitedLocations()
+                    .getLast().location.latitude, sameUser.getVisitedLocations()
+                    .getLast().location.latitude);
+        }
+    }
+    
+    @Test
+    public void shouldLoadTheUsersOfTheSeedFileTest(@TempDir Path directory) {
+        UserService generated = userService();
+        InternalUserFactory internalUserFactory = new InternalUserFactory(generated, 42, "");
+        Path seedFile = directory.resolve("users.csv");
+        internalUserFactory.writeSeedFile(seedFile);
+        
+        UserService loaded = userService();
+        new InternalUserFactory(loaded, 0, seedFile.toString());
+        
+        assertEquals(2500, loaded.getUserCount());
+        for(User user : generated.getAllUsers()) {
+            User loadedUser = loaded.getUserById(user.getUserId());
+            assertEquals(user.getUserName(), loadedUser.getUserName());
+            assertEquals(user.getEmailAddress(), loadedUser.getEmailAddress());
+            List<VisitedLocation> visitedLocations = loadedUser.getVisitedLocations();
+            assertEquals(user.getVisitedLocations()
+                    .size(), visitedLocations.size());
+            for(int i = 0; i < visitedLocations.size(); i++) {
+                VisitedLocation expected = user.getVisitedLocations()
+                        .get(i);
+                assertEquals(expected.location.latitude, visitedLocations.get(i).location.latitude);
+                assertEquals(expected.location.longitude, visitedLocations.get(i).location.longitude);
+                assertEquals(expected.timeVisited, visitedLocations.get(i).timeVisited);
+            }
+        }
+    }
+    
+    private UserService userService() {
+        UserService userService = new UserService(new InMemoryUserRepository(), new GpsGateway(gpsClient),
+                new RewardPipeline(rewardsService));
+        userServices.add(userService);
+        return userService;
+    }
+}
@@ -0,0 +1,106 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.user.LatestLocationIndex;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLatestLocationIndex {
+    
+    private final LatestLocationIndex latestLocationIndex = new LatestLocationIndex();
+    
+    @Test
+    public void shouldKeepTheLatestLocationOfEachUserTest() {
+        List<User> users = new ArrayList<>();
+        for(int i = 0; i < 10_000; i++) {
+            User user = new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com");
+            users.add(user);
+            latestLocationIndex.update(user, visitedLocation(user, i, 10));
+            latestLocationIndex.update(user, visitedLocation(user, i + 1, 20));
+            latestLocationIndex.update(user, visitedLocation(user, i + 2, 15));
+        }
+        
+        Map<UUID, Double> latitudes = new HashMap<>();
+        LatestLocationIndex.Cursor cursor = latestLocationIndex.cursor();
+        while(cursor.next()) {
+            assertEquals(20, cursor.timeVisited());
+            assertEquals(cursor.latitude(), cursor.longitude());
+            latitudes.put(cursor.userId(), cursor.latitude());
+        }
+        
+        assertEquals(10_000, latestLocationIndex.size());
+        assertEquals(10_000, latitudes.size());
+        for(int i = 0; i < users.size(); i++) {
+            assertEquals(i + 1, latitudes.get(users.get(i)
+                    .getUserId()));
+        }
+    }
+    
+    @Test
+    public void readersShouldSeeConsistentLocationsWhileUpdatingTest() {
+        List<User> users = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            users.add(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+        }
+        AtomicBoolean updating = new AtomicBoolean(true);
+        CompletableFuture<Void> updates = CompletableFuture.runAsync(() -> {
+            for(int time = 1; time <= 2000; time++) {
+                for(User user : users) {
+                    latestLocationIndex.update(user, visitedLocation(user, time, time));
+                }
+            }
+            updating.set(false);
+        });
+        
+        long reads = 0;
+        while(updating.get() || reads == 0) {
+            LatestLocationIndex.Cursor cursor = latestLocationIndex.cursor();
+            while(cursor.next()) {
+                assertEquals(cursor.timeVisited(), cursor.latitude());
+                assertEquals(cursor.timeVisited(), cursor.longitude());
+                reads++;
+            }
+        }
+        updates.join();
+        assertTrue(reads > 0);
+        assertEquals(100, latestLocationIndex.size());
+    }
+    
+    @Test
+    public void shouldIndexAUserInSeveralIndexesTest() {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        LatestLocationIndex otherIndex = new LatestLocationIndex();
+        for(int i = 0; i < 5000; i++) {
+            User other = new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com");
+            latestLocationIndex.update(other, visitedLocation(other, i, 1));
+        }
+        latestLocationIndex.update(user, visitedLocation(user, 1, 1));
+        
+        otherIndex.update(user, visitedLocation(user, 2, 2));
+        
+        LatestLocationIndex.Cursor cursor = otherIndex.cursor();
+        assertTrue(cursor.next());
+        assertEquals(user.getUserId(), cursor.userId());
+        assertEquals(2, cursor.latitude());
+        assertFalse(cursor.next());
+        assertEquals(5001, latestLocationIndex.size());
+    }
+    
+    private VisitedLocation visitedLocation(User user, double coordinate, long time) {
+        return new VisitedLocation(user.getUserId(), new Location(coordinate, coordinate), new Date(time));
+    }
+}
@@ -0,0 +1,196 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.user.LocationHistory;
+import com.openclassrooms.tourguide.user.LocationHistorySettings;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLocationHistory {
+    
+    private final UUID userId = UUID.randomUUID();
+    
+    @Test
+    public void shouldKeepOnlyTheRetentionTest() {
+        LocationHistory locationHistory = new LocationHistory(userId, 10);
+        
+        for(int i = 0; i < 25; i++) {
+            locationHistory.append(visitedLocation(i));
+        }
+        
+        LocationHistory.Snapshot snapshot = locationHistory.snapshot(0);
+        assertEquals(10, locationHistory.size());
+        assertEquals(25, locationHistory.getSequence());
+        assertEquals(15, snapshot.fromSequence());
+        assertEquals(10, snapshot.size());
+        for(int i = 0; i < snapshot.size(); i++) {
+            assertEquals(15 + i, snapshot.times()[i]);
+            assertEquals(15 + i, snapshot.visitedLocation(i).location.latitude);
+        }
+        assertEquals(24, locationHistory.getLast().timeVisited.getTime());
+    }
+    
+    @Test
+    public void shouldReturnLocationsFromTheSequenceTest() {
+        LocationHistory locationHistory = new LocationHistory(userId, 100);
+        
+        for(int i = 0; i < 30; i++) {
+            locationHistory.append(visitedLocation(i));
+        }
+        
+        LocationHistory.Snapshot snapshot = locationHistory.snapshot(20);
+        assertEquals(20, snapshot.fromSequence());
+        assertEquals(30, snapshot.toSequence());
+        assertEquals(20, snapshot.times()[0]);
+    }
+    
+    @Test
+    public void shouldBeEmptyAfterClearTest() {
+        LocationHistory locationHistory = new LocationHistory(userId, 10);
+        locationHistory.append(visitedLocation(0));
+        
+        locationHistory.clear();
+        
+        assertTrue(locationHistory.isEmpty());
+        assertNull(locationHistory.getLast());
+        assertEquals(0, locationHistory.snapshot(0)
+                .size());
+        assertEquals(1, locationHistory.append(visitedLocation(1)));
+    }
+    
+    @Test
+    public void shouldMoveOlderLocationsOffHeapTest() {
+        LocationHistory locationHistory = new LocationHistory(userId, 100, 8);
+        
+        for(int i = 0; i < 50; i++) {
+            locationHistory.append(visitedLocation(i));
+        }
+        
+        assertTrue(locationHistory.getOffHeapBytes() > 0);
+        assertConsecutive(locationHistory.snapshot(0), 0, 50);
+        assertConsecutive(locationHistory.snapshot(40), 40, 10);
+        for(int i = 50; i < 250; i++) {
+            locationHistory.append(visitedLocation(i));
+        }
+        assertEquals(92 * LocationHistory.COLD_RECORD_SIZE, locationHistory.getOffHeapBytes());
+        assertConsecutive(locationHistory.snapshot(0), 150, 100);
+        assertEquals(249, locationHistory.getLast().timeVisited.getTime());
+    }
+    
+    @Test
+    public void readersShouldSeeConsecutiveLocationsWhileAppendingTest() throws InterruptedException {
+        assertConsecutiveWhileAppending(new LocationHistory(userId, 64));
+    }
+    
+    @Test
+    public void readersShouldSeeConsecutiveLocationsAcrossTiersWhileAppendingTest() throws InterruptedException {
+        assertConsecutiveWhileAppending(new LocationHistory(userId, 64, 8));
+    }
+    
+    /**
+     * Fill thousands of users to the retention in a JVM whose direct memory barely fits their cold tiers.
+     */
+    @Test
+    public void shouldFillThousandsOfUsersUnderASmallDirectMemoryLimitTest() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(System.getProperty("java.home") + File.separator + "bin" +
+                File.separator + "java", "-XX:MaxDirectMemorySize=32m", "-cp", System.getProperty("java.class.path"),
+                DirectMemoryFill.class.getName()).redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream()
+                .readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        
+        assertEquals(0, process.exitValue(), output);
+    }
+    
+    /**
+     * Appends the retention of 5000 users, about 23 MB off-heap, then checks the cold tiers share a few slabs.
+     */
+    public static final class DirectMemoryFill {
+        
+        public static void main(String[] args) {
+            LocationHistorySettings settings = new LocationHistorySettings(200, 8);
+            InMemoryUserRepository userRepository = new InMemoryUserRepository(64, 5000, settings);
+            long offHeapBytes = 0;
+            for(int i = 0; i < 5000; i++) {
+                User user = userRepository.newUser(UUID.randomUUID(), "internalUser" + i, "000",
+                        "internalUser" + i + "@tourGuide.com");
+                userRepository.add(user);
+                for(int j = 0; j < settings.retention(); j++) {
+                    user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(j % 90, 0),
+                            new Date(j)));
+                }
+                offHeapBytes += user.getLocationHistory()
+                        .getOffHeapBytes();
+            }
+            long directBuffers = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)
+                    .stream()
+                    .filter(pool -> pool.getName()
+                            .equals("direct"))
+                    .mapToLong(BufferPoolMXBean::getCount)
+                    .sum();
+            if(offHeapBytes != 5000L * 192 * LocationHistory.COLD_RECORD_SIZE || directBuffers > 16) {
+                System.out.println("Off-heap bytes: " + offHeapBytes + ", direct buffers: " + directBuffers);
+                System.exit(1);
+            }
+        }
+    }
+    
+    private void assertConsecutive(LocationHistory.Snapshot snapshot, long fromSequence, int size) {
+        assertEquals(fromSequence, snapshot.fromSequence());
+        assertEquals(size, snapshot.size());
+        for(int i = 0; i < size; i++) {
+            assertEquals(fromSequence + i, snapshot.times()[i]);
+            assertEquals((fromSequence + i) % 90, snapshot.latitudes()[i]);
+        }
+    }
+    
+    private void assertConsecutiveWhileAppending(LocationHistory locationHistory) throws InterruptedException {
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> error = new AtomicReference<>();
+        
+        Thread reader = Thread.ofPlatform()
+                .start(() -> {
+                    while(writing.get()) {
+                        LocationHistory.Snapshot snapshot = locationHistory.snapshot(0);
+                        for(int i = 0; i < snapshot.size(); i++) {
+                            long expected = snapshot.fromSequence() + i;
+                            if(snapshot.times()[i] != expected || snapshot.latitudes()[i] != expected % 90) {
+                                error.set("Sequence " + expected + " read as " + snapshot.times()[i]);
+                            }
+                        }
+                    }
+                });
+        for(int i = 0; i < 200_000; i++) {
+            locationHistory.append(visitedLocation(i));
+        }
+        writing.set(false);
+        reader.join();
+        
+        assertNull(error.get());
+    }
+    
+    /**
+     * @return a VisitedLocation with the latitude and the time equal to the sequence number parsed.
+     */
+    private VisitedLocation visitedLocation(int sequence) {
+        return new VisitedLocation(userId, new Location(sequence % 90, 0), new Date(sequence));
+    }
+}
@@ -0,0 +1,79 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.client.MeteredRewardClient;
+import com.openclassrooms.tourguide.client.RewardClient;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.simulator.LatencyModel;
+import com.openclassrooms.tourguide.simulator.SimulatedFailureException;
+import com.openclassrooms.tourguide.simulator.SimulatedRewardClient;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class TestMetrics {
+    
+    @Autowired
+    private MockMvc mvc;
+    
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    
+    @BeforeEach
+    public void setUp() {
+        Metrics.addRegistry(registry);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        Metrics.removeRegistry(registry);
+    }
+    
+    @Test
+    public void shouldTimeClientCallsByOutcomeTest() {
+        // The application context calls the real RewardCentral in the background, it never fails.
+        RewardClient rewardClient = new MeteredRewardClient(new SimulatedRewardClient(42, LatencyModel.NONE, 0));
+        RewardClient failingClient = new MeteredRewardClient(new SimulatedRewardClient(42, LatencyModel.NONE, 1));
+        
+        rewardClient.getAttractionRewardPoints(UUID.randomUUID(), UUID.randomUUID());
+        rewardClient.getAttractionRewardPoints(UUID.randomUUID(), UUID.randomUUID());
+        assertThrows(SimulatedFailureException.class,
+                () -> failingClient.getAttractionRewardPoints(UUID.randomUUID(), UUID.randomUUID()));
+        
+        assertTrue(registry.get(TourGuideMetrics.CLIENT_CALLS)
+                .tags("client", "rewards", "outcome", "success")
+                .timer()
+                .count() >= 2);
+        assertEquals(1, registry.get(TourGuideMetrics.CLIENT_CALLS)
+                .tags("client", "rewards", "outcome", "failure")
+                .timer()
+                .count());
+    }
+    
+    @Test
+    public void shouldExposeTheMetersToPrometheusTest() throws Exception {
+        mvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("tourguide_users ")))
+                .andExpect(content().string(containsString("tourguide_visited_locations ")))
+                .andExpect(content().string(containsString("tourguide_client_calls_seconds_bucket")));
+    }
+}
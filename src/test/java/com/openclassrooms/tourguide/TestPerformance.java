@@ -8,9 +8,17 @@ import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.client.GpsClient;
+import com.openclassrooms.tourguide.client.GpsUtilClient;
+import com.openclassrooms.tourguide.client.RewardCentralClient;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.gateway.RewardPointsGateway;
 import com.openclassrooms.tourguide.internalUser.InternalUserFactory;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
 import com.openclassrooms.tourguide.service.UserService;
 import org.apache.commons.lang3.time.StopWatch;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import gpsUtil.GpsUtil;
@@ -18,6 +26,7 @@ import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import org.springframework.boot.test.context.SpringBootTest;
 import com.openclassrooms.tourguide.internalUser.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardPipeline;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
@@ -26,8 +35,12 @@ import rewardCentral.RewardCentral;
 @SpringBootTest
 public class TestPerformance {
     
-    private GpsUtil gpsUtil;
+    private GpsClient gpsClient;
+    private AttractionCatalog attractionCatalog;
+    private RewardPointsGateway rewardPointsGateway;
     private RewardsService rewardsService;
+    private RewardPipeline rewardPipeline;
+    private GpsGateway gpsGateway;
     private UserService userService;
     
     /*
@@ -55,13 +68,27 @@ public class TestPerformance {
     
     @BeforeEach
     public void setUp() {
-        gpsUtil = new GpsUtil();
-        rewardsService = new RewardsService(new RewardCentral());
-        userService = new UserService(rewardsService);
+        gpsClient = new GpsUtilClient(new GpsUtil());
+        attractionCatalog = new AttractionCatalog(gpsClient);
+        rewardPointsGateway = new RewardPointsGateway(new RewardCentralClient(new RewardCentral()));
+        rewardsService = new RewardsService(rewardPointsGateway, attractionCatalog);
+        rewardPipeline = new RewardPipeline(rewardsService);
+        gpsGateway = new GpsGateway(gpsClient);
+        userService = new UserService(new InMemoryUserRepository(), gpsGateway, rewardPipeline);
         InternalTestHelper.setInternalUserNumber(1000);
         InternalUserFactory internalUserFactory = new InternalUserFactory(userService);
     }
     
+    @AfterEach
+    public void tearDown() {
+        userService.tracker.stopTracking();
+        rewardPipeline.close();
+        rewardsService.close();
+        rewardPointsGateway.close();
+        gpsGateway.close();
+        attractionCatalog.close();
+    }
+    
     @Test
     public void highVolumeTrackLocation() {
         
@@ -73,7 +100,6 @@ public class TestPerformance {
         
         userService.trackAllUser();
         stopWatch.stop();
-        userService.tracker.stopTracking();
         
         System.out.println(
                 "highVolumeTrackLocation: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) +
@@ -92,14 +118,13 @@ public class TestPerformance {
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
         
-        Attraction attraction = gpsUtil.getAttractions()
+        Attraction attraction = gpsClient.getAttractions()
                 .getFirst();
         List<User> allUsers = userService.getAllUsers();
         allUsers.forEach(u -> u.addToVisitedLocations(new VisitedLocation(u.getUserId(), attraction, new Date())));
         rewardsService.calculateAllUsersRewards(allUsers);
 
         stopWatch.stop();
-        userService.tracker.stopTracking();
         
         System.out.println(
                 "highVolumeGetRewards: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) +
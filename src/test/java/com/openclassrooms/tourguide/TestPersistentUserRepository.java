@@ -0,0 +1,120 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.client.GpsUtilClient;
+import com.openclassrooms.tourguide.repository.PersistentUserRepository;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestPersistentUserRepository {
+    
+    @TempDir
+    private Path directory;
+    
+    private AttractionCatalog attractionCatalog;
+    
+    @BeforeEach
+    public void setUp() {
+        attractionCatalog = new AttractionCatalog(new GpsUtilClient(new GpsUtil()));
+    }
+    
+    @Test
+    public void shouldRestoreUsersLocationsAndRewardsTest() {
+        PersistentUserRepository userRepository = new PersistentUserRepository(directory, attractionCatalog);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        user.addToVisitedLocations(visitedLocation(user, 0));
+        assertTrue(userRepository.add(user));
+        assertFalse(userRepository.add(new User(UUID.randomUUID(), "jon", "111", "jon2@tourGuide.com")));
+        assertFalse(userRepository.add(new User(user.getUserId(), "jon2", "111", "jon2@tourGuide.com")));
+        
+        user.addToVisitedLocations(visitedLocation(user, 1));
+        Attraction attraction = attractionCatalog.getSnapshot()
+                .get(3);
+        int attractionId = attractionCatalog.getSnapshot()
+                .idOf(attraction);
+        user.addUserReward(attractionId, new UserReward(visitedLocation(user, 1), attraction, 42));
+        userRepository.close();
+        
+        PersistentUserRepository restoredRepository = new PersistentUserRepository(directory, attractionCatalog);
+        User restored = restoredRepository.findByUserName("jon");
+        restoredRepository.close();
+        
+        assertNotNull(restored);
+        assertEquals(1, restoredRepository.count());
+        assertEquals(user.getUserId(), restored.getUserId());
+        assertEquals("jon@tourGuide.com", restored.getEmailAddress());
+        List<VisitedLocation> visitedLocations = restored.getVisitedLocations();
+        assertEquals(2, visitedLocations.size());
+        assertEquals(1, visitedLocations.get(1).location.latitude);
+        assertEquals(1, visitedLocations.get(1).timeVisited.getTime());
+        assertEquals(2, restored.getLocationHistory()
+                .getSequence());
+        assertEquals(1, restored.getUserRewards()
+                .size());
+        assertEquals(42, restored.getUserRewards()
+                .getFirst()
+                .getRewardPoints());
+        assertEquals(attraction.attractionName, restored.getUserRewards()
+                .getFirst().attraction.attractionName);
+        assertTrue(restored.isAttractionRewarded(attractionId));
+    }
+    
+    @Test
+    public void shouldRestoreTheSnapshotThenTheLogTest() {
+        PersistentUserRepository userRepository = new PersistentUserRepository(directory, attractionCatalog);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        userRepository.add(user);
+        for(int i = 0; i < 5; i++) {
+            user.addToVisitedLocations(visitedLocation(user, i));
+        }
+        user.clearVisitedLocations();
+        user.addToVisitedLocations(visitedLocation(user, 5));
+        
+        userRepository.snapshot();
+        user.addToVisitedLocations(visitedLocation(user, 6));
+        user.addToVisitedLocations(visitedLocation(user, 7));
+        assertEquals(2, userRepository.getLogSize());
+        assertFalse(Files.exists(directory.resolve("log-0.dat")));
+        userRepository.close();
+        
+        PersistentUserRepository restoredRepository = new PersistentUserRepository(directory, attractionCatalog);
+        User restored = restoredRepository.findByUserId(user.getUserId());
+        restored.addToVisitedLocations(visitedLocation(user, 8));
+        restoredRepository.close();
+        
+        List<VisitedLocation> visitedLocations = restored.getVisitedLocations();
+        assertEquals(4, visitedLocations.size());
+        for(int i = 0; i < visitedLocations.size(); i++) {
+            assertEquals(5 + i, visitedLocations.get(i).timeVisited.getTime());
+        }
+        assertEquals(9, restored.getLocationHistory()
+                .getSequence());
+        PersistentUserRepository reopenedRepository = new PersistentUserRepository(directory, attractionCatalog);
+        assertEquals(9, reopenedRepository.findByUserId(user.getUserId())
+                .getLocationHistory()
+                .getSequence());
+        reopenedRepository.close();
+    }
+    
+    private VisitedLocation visitedLocation(User user, int i) {
+        return new VisitedLocation(user.getUserId(), new Location(i, i), new Date(i));
+    }
+}
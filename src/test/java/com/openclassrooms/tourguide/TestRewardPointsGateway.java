@@ -0,0 +1,114 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.client.RewardClient;
+import com.openclassrooms.tourguide.gateway.RewardPointsGateway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestRewardPointsGateway {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    private RewardPointsGateway rewardPointsGateway;
+
+    /**
+     * RewardClient stand-in counting the calls and the concurrent calls.
+     */
+    private final RewardClient rewardClient = (attractionId, userId) -> {
+        calls.incrementAndGet();
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(20);
+        } catch(InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+        }
+        running.decrementAndGet();
+        return 42;
+    };
+
+    @AfterEach
+    public void tearDown() {
+        rewardPointsGateway.close();
+    }
+
+    @Test
+    public void shouldCacheRewardPointsTest() {
+        rewardPointsGateway = new RewardPointsGateway(rewardClient);
+        UUID attractionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        int first = rewardPointsGateway.getRewardPoints(attractionId, userId)
+                .join();
+        int second = rewardPointsGateway.getRewardPoints(attractionId, userId)
+                .join();
+
+        assertEquals(42, first);
+        assertEquals(42, second);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentRequestsTest() {
+        rewardPointsGateway = new RewardPointsGateway(rewardClient);
+        UUID attractionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for(int i = 0; i < 50; i++) {
+            futures.add(rewardPointsGateway.getRewardPoints(attractionId, userId));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void shouldLimitConcurrentCallsTest() {
+        rewardPointsGateway = new RewardPointsGateway(rewardClient, 4, Duration.ofMinutes(1), 1000);
+        UUID userId = UUID.randomUUID();
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for(int i = 0; i < 40; i++) {
+            futures.add(rewardPointsGateway.getRewardPoints(UUID.randomUUID(), userId));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        assertEquals(40, calls.get());
+        assertTrue(maxRunning.get() <= 4);
+    }
+
+    @Test
+    public void shouldCompleteTheRequestsOfACallFailingWithAnErrorTest() {
+        AtomicInteger failingCalls = new AtomicInteger();
+        rewardPointsGateway = new RewardPointsGateway((attractionId, userId) -> {
+            if(failingCalls.incrementAndGet() == 1) {
+                throw new StackOverflowError();
+            }
+            return 42;
+        });
+        UUID attractionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        CompletableFuture<Integer> failed = rewardPointsGateway.getRewardPoints(attractionId, userId);
+        assertThrows(CompletionException.class, failed::join);
+
+        assertEquals(42, rewardPointsGateway.getRewardPoints(attractionId, userId)
+                .join());
+        assertEquals(2, failingCalls.get());
+    }
+}
@@ -3,12 +3,22 @@ package com.openclassrooms.tourguide;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.client.GpsClient;
+import com.openclassrooms.tourguide.client.GpsUtilClient;
+import com.openclassrooms.tourguide.client.RewardCentralClient;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.gateway.RewardPointsGateway;
 import com.openclassrooms.tourguide.internalUser.InternalUserFactory;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
 import com.openclassrooms.tourguide.service.UserService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import gpsUtil.GpsUtil;
@@ -17,6 +27,7 @@ import gpsUtil.location.VisitedLocation;
 import org.springframework.boot.test.context.SpringBootTest;
 import rewardCentral.RewardCentral;
 import com.openclassrooms.tourguide.internalUser.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardPipeline;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
@@ -24,36 +35,55 @@ import com.openclassrooms.tourguide.user.UserReward;
 @SpringBootTest
 public class TestRewardsService {
 
-    private GpsUtil gpsUtil;
+    private GpsClient gpsClient;
+    private AttractionCatalog attractionCatalog;
+    private RewardPointsGateway rewardPointsGateway;
     private RewardsService rewardsService;
+    private RewardPipeline rewardPipeline;
+    private GpsGateway gpsGateway;
+    private UserService userService;
+    
     @BeforeEach
-    public void setUp(){
-        gpsUtil = new GpsUtil();
-        rewardsService = new RewardsService(new RewardCentral());
+    public void setUp() {
+        InternalTestHelper.setInternalUserNumber(0);
+        gpsClient = new GpsUtilClient(new GpsUtil());
+        attractionCatalog = new AttractionCatalog(gpsClient);
+        rewardPointsGateway = new RewardPointsGateway(new RewardCentralClient(new RewardCentral()));
+        rewardsService = new RewardsService(rewardPointsGateway, attractionCatalog);
+        rewardPipeline = new RewardPipeline(rewardsService);
+        gpsGateway = new GpsGateway(gpsClient);
+        userService = new UserService(new InMemoryUserRepository(), gpsGateway, rewardPipeline);
     }
     
+    @AfterEach
+    public void tearDown() {
+        userService.tracker.stopTracking();
+        rewardPipeline.close();
+        rewardsService.close();
+        rewardPointsGateway.close();
+        gpsGateway.close();
+        attractionCatalog.close();
+    }
     
     @Test
-    public void userGetRewards() {
-        UserService userService= new UserService(rewardsService);
-        InternalTestHelper.setInternalUserNumber(0);
-        
+    public void userGetRewards() throws InterruptedException {
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
-        Attraction attraction = gpsUtil.getAttractions()
+        Attraction attraction = gpsClient.getAttractions()
                 .getFirst();
-        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+        VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+        user.addToVisitedLocations(visitedLocation);
+        rewardPipeline.publish(user, visitedLocation);
         
+        assertTrue(rewardPipeline.awaitIdle(Duration.ofSeconds(10)));
         List<UserReward> userRewards = userService.getUserRewards(user);
         
-        userService.tracker.stopTracking();
-        
         assertEquals(1, userRewards.size());
     }
     
     @Test
     public void isWithinAttractionProximity() {
         
-        Attraction attraction = gpsUtil.getAttractions()
+        Attraction attraction = gpsClient.getAttractions()
                 .getFirst();
         assertTrue(rewardsService.isWithinAttractionProximity(attraction, attraction));
     }
@@ -63,17 +93,72 @@ public class TestRewardsService {
 
         rewardsService.setProximityBuffer(Integer.MAX_VALUE);
         
-       UserService userService= new UserService(rewardsService);
-        
         InternalTestHelper.setInternalUserNumber(1);
         InternalUserFactory internalUserFactory = new InternalUserFactory(userService);
         
         List<User> users = userService.getAllUsers();
 
+         rewardsService.calculateUserRewards(users.getFirst());
          List<UserReward> userRewards = userService.getUserRewards(users.getFirst());
-        userService.tracker.stopTracking();
         
-        assertEquals(gpsUtil.getAttractions()
+        assertEquals(gpsClient.getAttractions()
+                .size(), userRewards.size());
+    }
+    
+    @Test
+    public void calculateAllUsersRewardsShouldRunRepeatedly() {
+        RewardsService pooledRewardsService = new RewardsService(rewardPointsGateway, attractionCatalog, 2);
+        Attraction attraction = gpsClient.getAttractions()
+                .getFirst();
+        List<User> users = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            User user = new User(UUID.randomUUID(), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com");
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+            users.add(user);
+        }
+        
+        try {
+            pooledRewardsService.calculateAllUsersRewards(users.subList(0, 50));
+            pooledRewardsService.calculateAllUsersRewards(users);
+        } finally {
+            pooledRewardsService.close();
+        }
+        
+        users.forEach(user -> assertEquals(1, user.getUserRewards()
+                .size()));
+    }
+    
+    @Test
+    public void userRewardsShouldNotBeDuplicated() {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        Attraction attraction = gpsClient.getAttractions()
+                .getFirst();
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+        
+        rewardsService.calculateUserRewards(user);
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+        rewardsService.calculateUserRewards(user);
+        List<UserReward> userRewards = userService.getUserRewards(user);
+        
+        assertEquals(1, userRewards.size());
+    }
+    
+    @Test
+    public void userRewardsShouldBeEvaluatedAgainWhenProximityChanges() {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        Attraction attraction = gpsClient.getAttractions()
+                .getFirst();
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+        
+        rewardsService.calculateUserRewards(user);
+        assertEquals(1, userService.getUserRewards(user)
+                .size());
+        
+        rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+        rewardsService.calculateUserRewards(user);
+        List<UserReward> userRewards = userService.getUserRewards(user);
+        
+        assertEquals(gpsClient.getAttractions()
                 .size(), userRewards.size());
     }
-}
\ No newline at end of file
+}
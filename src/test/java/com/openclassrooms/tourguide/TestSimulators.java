@@ -0,0 +1,105 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.simulator.LatencyModel;
+import com.openclassrooms.tourguide.simulator.SimulatedFailureException;
+import com.openclassrooms.tourguide.simulator.SimulatedGpsClient;
+import com.openclassrooms.tourguide.simulator.SimulatedRewardClient;
+import com.openclassrooms.tourguide.simulator.SimulatedTripPricingClient;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+import tripPricer.Provider;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestSimulators {
+    
+    private final UUID userId = new UUID(1, 2);
+    
+    @Test
+    public void shouldReturnTheSameLocationsForTheSameSeedTest() {
+        SimulatedGpsClient first = new SimulatedGpsClient(42, LatencyModel.NONE, 0, 10);
+        SimulatedGpsClient second = new SimulatedGpsClient(42, LatencyModel.NONE, 0, 10);
+        
+        for(int i = 0; i < 5; i++) {
+            VisitedLocation expected = first.getUserLocation(userId);
+            VisitedLocation actual = second.getUserLocation(userId);
+            assertEquals(expected.location.latitude, actual.location.latitude);
+            assertEquals(expected.location.longitude, actual.location.longitude);
+        }
+        assertEquals(10, first.getAttractions()
+                .size());
+        assertEquals(first.getAttractions()
+                .getFirst().latitude, second.getAttractions()
+                .getFirst().latitude);
+        assertNotEquals(new SimulatedGpsClient(7, LatencyModel.NONE, 0, 10).getUserLocation(userId).location.latitude,
+                new SimulatedGpsClient(42, LatencyModel.NONE, 0, 10).getUserLocation(userId).location.latitude);
+    }
+    
+    @Test
+    public void shouldReturnTheSameRewardPointsAndPricesForTheSameSeedTest() {
+        UUID attractionId = new UUID(3, 4);
+        SimulatedRewardClient rewardClient = new SimulatedRewardClient(42, LatencyModel.NONE, 0);
+        SimulatedTripPricingClient tripPricingClient = new SimulatedTripPricingClient(42, LatencyModel.NONE, 0);
+        
+        assertEquals(rewardClient.getAttractionRewardPoints(attractionId, userId),
+                new SimulatedRewardClient(42, LatencyModel.NONE, 0).getAttractionRewardPoints(attractionId, userId));
+        List<Provider> providers = tripPricingClient.getPrice("key", attractionId, 2, 1, 3, 100);
+        List<Provider> again = tripPricingClient.getPrice("key", attractionId, 2, 1, 3, 100);
+        assertEquals(5, providers.size());
+        assertEquals(5, providers.stream()
+                .map(provider -> provider.name)
+                .distinct()
+                .count());
+        for(int i = 0; i < providers.size(); i++) {
+            assertEquals(providers.get(i).name, again.get(i).name);
+            assertEquals(providers.get(i).price, again.get(i).price);
+        }
+    }
+    
+    @Test
+    public void shouldFailAtTheFailureRateTest() {
+        SimulatedRewardClient rewardClient = new SimulatedRewardClient(42, LatencyModel.NONE, 0.2);
+        int failures = 0;
+        for(int i = 0; i < 10_000; i++) {
+            try {
+                rewardClient.getAttractionRewardPoints(new UUID(0, i), userId);
+            } catch(SimulatedFailureException e) {
+                failures++;
+            }
+        }
+        
+        assertTrue(failures > 1_800 && failures < 2_200);
+        assertThrows(SimulatedFailureException.class,
+                () -> new SimulatedRewardClient(42, LatencyModel.NONE, 1).getAttractionRewardPoints(userId, userId));
+    }
+    
+    @Test
+    public void shouldParseLatencyModelsTest() {
+        SplittableRandom random = new SplittableRandom(42);
+        
+        assertEquals(0, LatencyModel.parse("none")
+                .sampleNanos(random));
+        assertEquals(Duration.ofMillis(50)
+                .toNanos(), LatencyModel.parse("fixed:50ms")
+                .sampleNanos(random));
+        long uniform = LatencyModel.parse("uniform:10ms-20ms")
+                .sampleNanos(random);
+        assertTrue(uniform >= Duration.ofMillis(10)
+                .toNanos() && uniform <= Duration.ofMillis(20)
+                .toNanos());
+        assertTrue(LatencyModel.parse("lognormal:100ms:0.5")
+                .sampleNanos(random) > 0);
+        assertEquals(Duration.ofMillis(2050)
+                .toNanos(), LatencyModel.parse("fixed:50ms+spike:1:2s")
+                .sampleNanos(random));
+        assertThrows(IllegalArgumentException.class, () -> LatencyModel.parse("gaussian:1ms"));
+    }
+}
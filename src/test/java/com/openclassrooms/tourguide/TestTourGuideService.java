@@ -1,14 +1,26 @@
 package com.openclassrooms.tourguide;
 
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.client.GpsClient;
+import com.openclassrooms.tourguide.client.GpsUtilClient;
+import com.openclassrooms.tourguide.client.RewardCentralClient;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.gateway.RewardPointsGateway;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.service.RewardPipeline;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.service.UserService;
 import gpsUtil.GpsUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import org.springframework.boot.test.context.SpringBootTest;
 import com.openclassrooms.tourguide.internalUser.InternalTestHelper;
@@ -17,24 +29,48 @@ import rewardCentral.RewardCentral;
 import tripPricer.Provider;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 public class TestTourGuideService {
-
+    
+    private AttractionCatalog attractionCatalog;
+    private RewardPointsGateway rewardPointsGateway;
+    private RewardsService rewardsService;
+    private RewardPipeline rewardPipeline;
+    private GpsGateway gpsGateway;
+    private TourGuideService tourGuideService;
+    private UserService userService;
+    
+    @BeforeEach
+    public void setUp() {
+        InternalTestHelper.setInternalUserNumber(0);
+        GpsClient gpsClient = new GpsUtilClient(new GpsUtil());
+        attractionCatalog = new AttractionCatalog(gpsClient);
+        rewardPointsGateway = new RewardPointsGateway(new RewardCentralClient(new RewardCentral()));
+        rewardsService = new RewardsService(rewardPointsGateway, attractionCatalog);
+        rewardPipeline = new RewardPipeline(rewardsService);
+        gpsGateway = new GpsGateway(gpsClient);
+        tourGuideService = new TourGuideService(attractionCatalog);
+        userService = new UserService(new InMemoryUserRepository(), gpsGateway, rewardPipeline);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        userService.tracker.stopTracking();
+        rewardPipeline.close();
+        rewardsService.close();
+        rewardPointsGateway.close();
+        gpsGateway.close();
+        attractionCatalog.close();
+    }
     
     @Test
     public void getUserLocationTest() {
-        GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(new RewardCentral());
-        InternalTestHelper.setInternalUserNumber(0);
-        UserService userService= new UserService(rewardsService);
-        
-        
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
         VisitedLocation visitedLocation = userService.trackUserLocation(user);
-        userService.tracker.stopTracking();
        
         assertTrue(visitedLocation.userId.equals(user.getUserId()));
         
@@ -42,11 +78,6 @@ public class TestTourGuideService {
     
     @Test
     public void addUserTest() {
-        InternalTestHelper.setInternalUserNumber(0);
-        GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(new RewardCentral());
-        UserService userService= new UserService(rewardsService);
-        
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
         User user2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
         
@@ -56,19 +87,29 @@ public class TestTourGuideService {
         User retrivedUser = userService.getUserByUsername(user.getUserName());
         User retrivedUser2 = userService.getUserByUsername(user2.getUserName());
         
-        userService.tracker.stopTracking();
-        
         assertEquals(user, retrivedUser);
         assertEquals(user2, retrivedUser2);
     }
     
+    @Test
+    public void rejectedUsersShouldNotBeIndexedTest() {
+        User user = locatedUser(UUID.randomUUID(), "jon");
+        User sameName = locatedUser(UUID.randomUUID(), "jon");
+        User sameId = locatedUser(user.getUserId(), "jon2");
+        User other = locatedUser(UUID.randomUUID(), "jon3");
+        
+        assertTrue(userService.addUser(user));
+        assertFalse(userService.addUser(sameName));
+        assertFalse(userService.addUser(sameId));
+        assertEquals(1, userService.addUsers(List.of(sameName, other, locatedUser(UUID.randomUUID(), "jon3"))));
+        
+        assertEquals(2, userService.getUserCount());
+        assertEquals(2, userService.getLatestLocations()
+                .size());
+    }
+    
     @Test
     public void getAllUsersTest() {
-        InternalTestHelper.setInternalUserNumber(0);
-        GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(new RewardCentral());
-        UserService userService= new UserService(rewardsService);
-        
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
         User user2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
         
@@ -77,60 +118,42 @@ public class TestTourGuideService {
         
         List<User> allUsers = userService.getAllUsers();
         
-        userService.tracker.stopTracking();
         assertTrue(allUsers.contains(user));
         assertTrue(allUsers.contains(user2));
     }
     
+    private User locatedUser(UUID userId, String userName) {
+        User user = new User(userId, userName, "000", userName + "@tourGuide.com");
+        user.addToVisitedLocations(new VisitedLocation(userId, new Location(33.817595, -117.922008), new Date()));
+        return user;
+    }
+    
     @Test
     public void trackUserTest() {
-        InternalTestHelper.setInternalUserNumber(0);
-        GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(new RewardCentral());
-        UserService userService= new UserService(rewardsService);
-        
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
         VisitedLocation visitedLocation = userService.trackUserLocation(user);
         
-        userService.tracker.stopTracking();
-        
         assertEquals(user.getUserId(), visitedLocation.userId);
     }
     
     @Test
     public void getNearbyAttractionsTest() {
-        InternalTestHelper.setInternalUserNumber(0);
-        GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(new RewardCentral());
-        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
-        UserService userService= new UserService(rewardsService);
-        
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
         
         VisitedLocation visitedLocation = userService.trackUserLocation(user);
         
         List<Attraction> attractions = tourGuideService.getNearByAttractions(visitedLocation);
         
-        userService.tracker.stopTracking();
-        
         assertEquals(5, attractions.size());
     }
     
 
     @Test
     public void getTripDealsTest() {
-        InternalTestHelper.setInternalUserNumber(0);
-        GpsUtil gpsUtil = new GpsUtil();
-        RewardsService rewardsService = new RewardsService(new RewardCentral());
-        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
-        UserService userService= new UserService(rewardsService);
-        
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
         userService.addUser(user);
         List<Provider> providers = tourGuideService.getTripDeals(user);
         
-        userService.tracker.stopTracking();
-        
         assertEquals(5, providers.size());
     }
     
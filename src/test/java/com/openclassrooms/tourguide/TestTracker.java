@@ -0,0 +1,126 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.client.GpsClient;
+import com.openclassrooms.tourguide.client.RewardCentralClient;
+import com.openclassrooms.tourguide.gateway.GpsGateway;
+import com.openclassrooms.tourguide.gateway.RewardPointsGateway;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.service.RewardPipeline;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.UserService;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import rewardCentral.RewardCentral;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTracker {
+    
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private UserService userService;
+    
+    /**
+     * GpsClient stand-in far from the gpsUtil attractions, counting the concurrent calls.
+     */
+    private final GpsClient gpsClient = new GpsClient() {
+        @Override
+        public List<Attraction> getAttractions() {
+            return new GpsUtil().getAttractions();
+        }
+        
+        @Override
+        public VisitedLocation getUserLocation(UUID userId) {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+            } catch(InterruptedException e) {
+                Thread.currentThread()
+                        .interrupt();
+            }
+            running.decrementAndGet();
+            return new VisitedLocation(userId, new Location(0, 0), new Date());
+        }
+    };
+    
+    @AfterEach
+    public void tearDown() {
+        if(userService != null) {
+            userService.tracker.stopTracking();
+        }
+    }
+    
+    @Test
+    public void shouldTrackAllPartitionsWithLimitedConcurrencyTest() throws InterruptedException {
+        RewardsService rewardsService = new RewardsService(new RewardPointsGateway(new RewardCentralClient(new RewardCentral())),
+                new AttractionCatalog(gpsClient));
+        GpsGateway gpsGateway = new GpsGateway(gpsClient, 1, 5, Duration.ofSeconds(1), Duration.ofSeconds(10));
+        userService = new UserService(new InMemoryUserRepository(), gpsGateway, new RewardPipeline(rewardsService),
+                new TrackerSettings(Duration.ofMillis(400), 4));
+        for(int i = 0; i < 100; i++) {
+            userService.addUser(
+                    new User(UUID.randomUUID(), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com"));
+        }
+        
+        TimeUnit.MILLISECONDS.sleep(1500);
+        
+        assertTrue(userService.tracker.getCycleCount() >= 4);
+        assertTrue(maxRunning.get() <= 5);
+        userService.getAllUsers()
+                .forEach(user -> assertFalse(user.getLocationHistory()
+                        .isEmpty()));
+    }
+    
+    @Test
+    public void shouldRejectMorePartitionsThanShardsTest() {
+        RewardsService rewardsService = new RewardsService(new RewardPointsGateway(new RewardCentralClient(new RewardCentral())),
+                new AttractionCatalog(gpsClient));
+        RewardPipeline rewardPipeline = new RewardPipeline(rewardsService);
+        
+        assertThrows(IllegalArgumentException.class, () -> new UserService(new InMemoryUserRepository(8),
+                new GpsGateway(gpsClient), rewardPipeline, new TrackerSettings(Duration.ofMinutes(5), 9)));
+        rewardPipeline.close();
+    }
+    
+    @Test
+    public void interruptedTrackingShouldBeCancelledTest() throws InterruptedException {
+        RewardsService rewardsService = new RewardsService(new RewardPointsGateway(new RewardCentralClient(new RewardCentral())),
+                new AttractionCatalog(gpsClient));
+        userService = new UserService(new InMemoryUserRepository(), new GpsGateway(gpsClient),
+                new RewardPipeline(rewardsService), new TrackerSettings(Duration.ofMinutes(5), 4));
+        userService.addUser(new User(UUID.randomUUID(), "internalUser", "000", "internalUser@tourGuide.com"));
+        AtomicInteger interrupted = new AtomicInteger();
+        
+        Thread thread = Thread.ofVirtual()
+                .start(() -> {
+                    Thread.currentThread()
+                            .interrupt();
+                    assertThrows(CancellationException.class, () -> userService.trackPartition(0, 1));
+                    if(Thread.currentThread()
+                            .isInterrupted()) {
+                        interrupted.incrementAndGet();
+                    }
+                });
+        thread.join();
+        
+        assertEquals(1, interrupted.get());
+    }
+}
@@ -0,0 +1,91 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.client.TripPricingClient;
+import com.openclassrooms.tourguide.gateway.TripDealsGateway;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import org.junit.jupiter.api.Test;
+import tripPricer.Provider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TestTripDealsGateway {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<Integer> pricedRewardPoints = new ArrayList<>();
+
+    /**
+     * TripPricingClient stand-in counting the calls.
+     */
+    private final TripPricingClient tripPricingClient = (apiKey, attractionId, adults, children, nightsStay,
+                                                         rewardsPoints) -> {
+        calls.incrementAndGet();
+        synchronized(pricedRewardPoints) {
+            pricedRewardPoints.add(rewardsPoints);
+        }
+        try {
+            Thread.sleep(20);
+        } catch(InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+        }
+        return List.of(new Provider(attractionId, "Provider", 100 * adults - rewardsPoints));
+    };
+
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    public void shouldCacheTheQuoteUntilThePreferencesOrRewardsChangeTest() {
+        TripDealsGateway tripDealsGateway = new TripDealsGateway(tripPricingClient);
+        UserPreferences userPreferences = new UserPreferences();
+        userPreferences.setNumberOfAdults(2);
+
+        List<Provider> first = tripDealsGateway.getTripDeals(userId, userPreferences, 10);
+        List<Provider> second = tripDealsGateway.getTripDeals(userId, userPreferences, 10);
+        assertSame(first, second);
+        assertEquals(1, calls.get());
+
+        tripDealsGateway.getTripDeals(userId, userPreferences, 20);
+        assertEquals(2, calls.get());
+        tripDealsGateway.getTripDeals(userId, UserPreferences.DEFAULT, 20);
+        assertEquals(3, calls.get());
+        tripDealsGateway.getTripDeals(userId, userPreferences, 10);
+        assertEquals(4, calls.get());
+
+        userPreferences.setNumberOfAdults(3);
+        tripDealsGateway.getTripDeals(userId, userPreferences, 10);
+        assertEquals(5, calls.get());
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentRequestsTest() {
+        TripDealsGateway tripDealsGateway = new TripDealsGateway(tripPricingClient);
+
+        List<CompletableFuture<List<Provider>>> futures = new ArrayList<>();
+        for(int i = 0; i < 50; i++) {
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> tripDealsGateway.getTripDeals(userId, UserPreferences.DEFAULT, 0)));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void shouldPriceTheRewardPointsBucketTest() {
+        TripDealsGateway tripDealsGateway = new TripDealsGateway(tripPricingClient, Duration.ofMinutes(1), 1000, 100);
+
+        tripDealsGateway.getTripDeals(userId, UserPreferences.DEFAULT, 120);
+        tripDealsGateway.getTripDeals(userId, UserPreferences.DEFAULT, 199);
+        tripDealsGateway.getTripDeals(userId, UserPreferences.DEFAULT, 200);
+
+        assertEquals(List.of(100, 200), pricedRewardPoints);
+    }
+}
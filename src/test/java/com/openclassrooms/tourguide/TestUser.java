@@ -0,0 +1,73 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserReward;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestUser {
+    
+    private final User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+    
+    @Test
+    public void newUserShouldShareTheDefaultsTest() {
+        assertSame(UserPreferences.DEFAULT, user.readUserPreferences());
+        assertSame(UserPreferences.DEFAULT, new User(UUID.randomUUID(), "jane", "000", "jane@tourGuide.com")
+                .readUserPreferences());
+        assertTrue(user.getUserRewards()
+                .isEmpty());
+        assertTrue(user.getTripDeals()
+                .isEmpty());
+        assertFalse(user.isAttractionRewarded(0));
+        assertNull(user.getLastVisitedLocation());
+        assertThrows(UnsupportedOperationException.class, () -> UserPreferences.DEFAULT.setNumberOfAdults(2));
+    }
+    
+    @Test
+    public void defaultPreferencesShouldBeCopiedOnWriteTest() {
+        user.getUserPreferences()
+                .setNumberOfAdults(2);
+        
+        assertNotSame(UserPreferences.DEFAULT, user.readUserPreferences());
+        assertSame(user.getUserPreferences(), user.readUserPreferences());
+        assertEquals(2, user.readUserPreferences()
+                .getNumberOfAdults());
+        assertEquals(1, UserPreferences.DEFAULT.getNumberOfAdults());
+    }
+    
+    @Test
+    public void userShouldMaterializeItsStateOnWriteTest() {
+        UserPreferences userPreferences = new UserPreferences();
+        userPreferences.setNumberOfAdults(2);
+        user.setUserPreferences(userPreferences);
+        Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+        VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.817595, -117.922008),
+                new Date());
+        
+        user.addToVisitedLocations(visitedLocation);
+        assertTrue(user.addUserReward(3, new UserReward(visitedLocation, attraction, 10)));
+        assertFalse(user.addUserReward(3, new UserReward(visitedLocation, attraction, 10)));
+        
+        assertNotSame(UserPreferences.DEFAULT, user.getUserPreferences());
+        assertEquals(2, user.getUserPreferences()
+                .getNumberOfAdults());
+        assertEquals(1, user.getUserRewards()
+                .size());
+        assertTrue(user.isAttractionRewarded(3));
+        assertEquals(visitedLocation.timeVisited, user.getLastVisitedLocation().timeVisited);
+    }
+}
@@ -0,0 +1,98 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.user.LocationHistorySettings;
+import com.openclassrooms.tourguide.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestUserRepository {
+    
+    private InMemoryUserRepository userRepository;
+    
+    @BeforeEach
+    public void setUp() {
+        userRepository = new InMemoryUserRepository(8);
+    }
+    
+    @Test
+    public void shouldFindUserByNameAndIdTest() {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        
+        assertTrue(userRepository.add(user));
+        
+        assertSame(user, userRepository.findByUserName("jon"));
+        assertSame(user, userRepository.findByUserId(user.getUserId()));
+        assertEquals(1, userRepository.count());
+    }
+    
+    @Test
+    public void shouldNotReplaceExistingUserTest() {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        User duplicate = new User(UUID.randomUUID(), "jon", "111", "jon2@tourGuide.com");
+        
+        userRepository.add(user);
+        
+        assertFalse(userRepository.add(duplicate));
+        assertSame(user, userRepository.findByUserName("jon"));
+        assertEquals(1, userRepository.count());
+    }
+    
+    @Test
+    public void shouldNotReplaceExistingUserIdTest() {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        User duplicate = new User(user.getUserId(), "jon2", "111", "jon2@tourGuide.com");
+        
+        userRepository.add(user);
+        
+        assertFalse(userRepository.add(duplicate));
+        assertNull(userRepository.findByUserName("jon2"));
+        assertSame(user, userRepository.findByUserId(user.getUserId()));
+        assertEquals(List.of(), userRepository.addAll(List.of(duplicate)));
+        assertEquals(1, userRepository.count());
+    }
+    
+    @Test
+    public void partitionsShouldCoverAllUsersOnceTest() {
+        IntStream.range(0, 1000)
+                .parallel()
+                .forEach(i -> userRepository.add(
+                        new User(UUID.randomUUID(), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com")));
+        
+        Set<UUID> userIds = new HashSet<>();
+        for(int partition = 0; partition < 3; partition++) {
+            List<User> users = userRepository.partition(partition, 3)
+                    .toList();
+            users.forEach(user -> assertTrue(userIds.add(user.getUserId())));
+        }
+        
+        assertEquals(1000, userRepository.count());
+        assertEquals(1000, userIds.size());
+    }
+    
+    @Test
+    public void newUserShouldUseTheLocationHistorySettingsTest() {
+        InMemoryUserRepository configuredRepository = new InMemoryUserRepository(8, 0,
+                new LocationHistorySettings(10, 4));
+        
+        User user = configuredRepository.newUser(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        
+        assertEquals(10, user.getLocationHistory()
+                .getRetention());
+        assertEquals(4, user.getLocationHistory()
+                .getHotCapacity());
+        assertEquals(0, configuredRepository.count());
+    }
+}